@@ -0,0 +1,101 @@
+/**
+ * Count, sum, minimum and maximum of point weights. Used both as a subtree summary stored in line nodes, and as the
+ * result of an aggregate range query.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class Aggregate {
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a single weight.
+     * @param weight Weight of a point
+     */
+    public void add(double weight) {
+        count++;
+        sum += weight;
+        min = Math.min(min, weight);
+        max = Math.max(max, weight);
+    }
+
+    /**
+     * Adds all weights summarized by given aggregate.
+     * @param other Aggregate to be added
+     */
+    public void add(Aggregate other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Resets to the summary of given aggregates.
+     * @param left First aggregate
+     * @param right Second aggregate
+     */
+    void set(Aggregate left, Aggregate right) {
+        count = left.count + right.count;
+        sum = left.sum + right.sum;
+        min = Math.min(left.min, right.min);
+        max = Math.max(left.max, right.max);
+    }
+
+    /**
+     * Resets to the summary of a single weight, or of nothing.
+     * @param weight Weight of a point
+     * @param present False for an empty summary
+     */
+    void set(double weight, boolean present) {
+        count = present ? 1 : 0;
+        sum = present ? weight : 0;
+        min = present ? weight : Double.POSITIVE_INFINITY;
+        max = present ? weight : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return Number of points
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Sum of weights
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return Minimum weight, positive infinity if there are no points
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return Maximum weight, negative infinity if there are no points
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return Average weight, NaN if there are no points
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public String toString() {
+        if (count == 0) {
+            return "count=0";
+        }
+        return String.format("count=%d sum=%s min=%s max=%s mean=%s", count, sum, min, max, getMean());
+    }
+}
@@ -0,0 +1,509 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only, array based copy of a KDTree. Nodes are stored in contiguous arrays in van Emde Boas order: the top half levels
+ * of the tree are laid out first, followed by each bottom half subtree, recursively. A root-to-leaf walk then touches
+ * O(log_B n) cache lines for any cache line size B, instead of missing the cache at nearly every level.
+ * Nodes can be kept on the heap or off-heap, see NodeStorage.
+ * Node storage also keeps coordinates of points in left to right order, so every subtree's points form a contiguous
+ * run. Queries stop descending at small subtrees and scan their runs with a RunScanner, instead of chasing child links down
+ * to each point: with the Vector API several points are compared per instruction, otherwise one point per iteration.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class FrozenKDTree {
+    /**
+     * Node order of the arrays. Trees are always laid out in van Emde Boas order; the other orders are only built by
+     * LayoutBenchmark, for comparing them.
+     */
+    enum Layout {
+        VanEmdeBoas, BreadthFirst, Preorder
+    }
+
+    private static final int NONE = NodeStorage.NONE;
+    private static final int LEAF_SCAN = 32; // Subtrees with at most this many points are scanned instead of traversed
+    private static final RunScanner SCANNER = RunScanner.create();
+
+    private final NodeStorage nodes;
+    private final int height; // Number of levels
+
+    private FrozenKDTree(NodeStorage nodes, int height) {
+        this.nodes = nodes;
+        this.height = height;
+    }
+
+    /**
+     * Creates a frozen tree from a laid out node storage, and collects it's points into contiguous runs.
+     * @param storage Laid out nodes
+     * @param height Number of levels
+     * @return Frozen tree
+     */
+    private static FrozenKDTree create(NodeStorage storage, int height) {
+        if (storage.size() > 0) {
+            collectLeaves(storage, 0, new int[]{0});
+        }
+        return new FrozenKDTree(storage, height);
+    }
+
+    /**
+     * Stores points of given subtree in leaf order, and records left subtree sizes.
+     * @param storage Laid out nodes
+     * @param nd Current node
+     * @param next Next free position in leaf order
+     * @return Number of points in the subtree
+     */
+    private static int collectLeaves(NodeStorage storage, int nd, int[] next) {
+        if (storage.getLeft(nd) == NONE) {
+            storage.setLeaf(next[0]++, storage.getX(nd), storage.getY(nd));
+            return 1;
+        }
+        int leftSize = collectLeaves(storage, storage.getLeft(nd), next);
+        storage.setLeftSize(nd, leftSize);
+        return leftSize + collectLeaves(storage, storage.getRight(nd), next);
+    }
+
+    /**
+     * Creates node storage of requested kind.
+     * @param nodeCount Number of nodes
+     * @param offHeap True for off-heap storage
+     * @return Empty node storage
+     */
+    private static NodeStorage createStorage(int nodeCount, boolean offHeap) {
+        return offHeap ? new OffHeapNodeStorage(nodeCount) : new HeapNodeStorage(nodeCount);
+    }
+
+    /**
+     * Relays given tree's nodes into contiguous arrays in van Emde Boas order. Later changes of the tree are not reflected.
+     * @param tree The tree to be frozen
+     * @param offHeap True for keeping nodes outside of the garbage collected heap
+     * @return Frozen copy of the tree
+     */
+    public static FrozenKDTree freeze(KDTree tree, boolean offHeap) {
+        if (tree.getTombstoneCount() > 0) { // Tombstones are not copied, remaining points are bulk loaded instead
+            List<Point2D> points = tree.getPoints();
+            double[] xs = new double[points.size()];
+            double[] ys = new double[points.size()];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = points.get(i).getX();
+                ys[i] = points.get(i).getY();
+            }
+            return bulkLoad(xs, ys, offHeap);
+        }
+        // Flatten the node graph in preorder, so the layout can be computed on primitive arrays
+        List<KDNode> nodes = new ArrayList<>();
+        List<Integer> lefts = new ArrayList<>();
+        List<Integer> rights = new ArrayList<>();
+        int height = tree.getRoot() == null ? 0 : flatten(tree.getRoot(), nodes, lefts, rights);
+        int n = nodes.size();
+        int[] tmpLeft = new int[n];
+        int[] tmpRight = new int[n];
+        for (int i = 0; i < n; i++) {
+            tmpLeft[i] = lefts.get(i);
+            tmpRight[i] = rights.get(i);
+        }
+
+        int[] position = vebPositions(tmpLeft, tmpRight, height);
+        NodeStorage storage = createStorage(n, offHeap);
+        for (int i = 0; i < n; i++) {
+            NodeData dt = nodes.get(i).getData();
+            storage.set(position[i], dt.getPoint().getX(), dt.getPoint().getY(),
+                    tmpLeft[i] == NONE ? NONE : position[tmpLeft[i]],
+                    tmpRight[i] == NONE ? NONE : position[tmpRight[i]],
+                    dt.getDirection() == NodeData.Direction.Horizontal ? 1 : 0);
+        }
+        return create(storage, height);
+    }
+
+    /**
+     * Builds a balanced tree directly from coordinate arrays, without creating a KDNode graph. Splits at the median, alternating
+     * between X and Y like KDTree.build does. Only primitive arrays are allocated on heap while building.
+     * @param xs X coords of points
+     * @param ys Y coords of points
+     * @param offHeap True for keeping nodes outside of the garbage collected heap
+     * @return Built tree
+     */
+    public static FrozenKDTree bulkLoad(double[] xs, double[] ys, boolean offHeap) {
+        return bulkLoad(xs, ys, offHeap, Layout.VanEmdeBoas);
+    }
+
+    /**
+     * Builds a balanced tree directly from coordinate arrays, with nodes in given order.
+     * @param xs X coords of points
+     * @param ys Y coords of points
+     * @param offHeap True for keeping nodes outside of the garbage collected heap
+     * @param layout Node order
+     * @return Built tree
+     */
+    static FrozenKDTree bulkLoad(double[] xs, double[] ys, boolean offHeap, Layout layout) {
+        int n = xs.length;
+        if (n == 0) {
+            return create(createStorage(0, offHeap), 0);
+        }
+        int nodeCount = 2 * n - 1;
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) {
+            idx[i] = i;
+        }
+        double[] wx = xs.clone(); // Coordinates are permuted along with indices, so partitioning scans memory sequentially
+        double[] wy = ys.clone();
+        int[] tmpLeft = new int[nodeCount];
+        int[] tmpRight = new int[nodeCount];
+        int[] pointOf = new int[nodeCount]; // Point of the node, median point for lines
+        byte[] axisOf = new byte[nodeCount];
+        int height = bulkBuild(wx, wy, idx, 0, n, 0, tmpLeft, tmpRight, pointOf, axisOf, new int[]{0});
+
+        int[] position;
+        if (layout == Layout.BreadthFirst) {
+            position = breadthFirstPositions(tmpLeft, tmpRight);
+        } else if (layout == Layout.Preorder) {
+            position = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                position[i] = i;
+            }
+        } else {
+            position = vebPositions(tmpLeft, tmpRight, height);
+        }
+        NodeStorage storage = createStorage(nodeCount, offHeap);
+        for (int i = 0; i < nodeCount; i++) {
+            int p = pointOf[i];
+            storage.set(position[i], xs[p], ys[p],
+                    tmpLeft[i] == NONE ? NONE : position[tmpLeft[i]],
+                    tmpRight[i] == NONE ? NONE : position[tmpRight[i]],
+                    axisOf[i]);
+        }
+        return create(storage, height);
+    }
+
+    /**
+     * Builds the subtree of points idx[lo..hi) in preorder numbering. Partitions the points around their median in
+     * current dimension instead of sorting them, so expected running time is O(nlogn).
+     * @param xs X coords of points, reordered while building
+     * @param ys Y coords of points, reordered while building
+     * @param idx Original indices of points, reordered while building
+     * @param lo First point of the subtree
+     * @param hi One past the last point of the subtree
+     * @param depth Current depth
+     * @param lc Left child numbers being filled
+     * @param rc Right child numbers being filled
+     * @param pointOf Point index of each node being filled
+     * @param axisOf Split axis of each node being filled
+     * @param next Next free node number
+     * @return Height of the subtree
+     */
+    private static int bulkBuild(double[] xs, double[] ys, int[] idx, int lo, int hi, int depth,
+                                 int[] lc, int[] rc, int[] pointOf, byte[] axisOf, int[] next) {
+        int id = next[0]++;
+        if (hi - lo == 1) {
+            lc[id] = NONE;
+            rc[id] = NONE;
+            pointOf[id] = idx[lo];
+            return 1;
+        }
+        int d = depth % 2;
+        int median = lo + (hi - lo - 1) / 2;
+        selectNth(d == 0 ? xs : ys, d == 0 ? ys : xs, idx, lo, hi, median);
+        pointOf[id] = idx[median];
+        axisOf[id] = (byte) d;
+        lc[id] = next[0];
+        int hl = bulkBuild(xs, ys, idx, lo, median + 1, depth + 1, lc, rc, pointOf, axisOf, next);
+        rc[id] = next[0];
+        int hr = bulkBuild(xs, ys, idx, median + 1, hi, depth + 1, lc, rc, pointOf, axisOf, next);
+        return Math.max(hl, hr) + 1;
+    }
+
+    /**
+     * Reorders points in [lo..hi) so that k-th position holds the point with k-th smallest key, smaller or equal keys are
+     * before it, and greater or equal keys are after it.
+     * @param key Coordinates compared
+     * @param other Other coordinates of points
+     * @param idx Original indices of points
+     * @param lo First index
+     * @param hi One past the last index
+     * @param k Requested rank
+     */
+    private static void selectNth(double[] key, double[] other, int[] idx, int lo, int hi, int k) {
+        hi--;
+        while (hi > lo) {
+            double pivot = key[lo + (hi - lo) / 2];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) {
+                    i++;
+                }
+                while (key[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(key, other, idx, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(double[] key, double[] other, int[] idx, int i, int j) {
+        double t = key[i];
+        key[i] = key[j];
+        key[j] = t;
+        t = other[i];
+        other[i] = other[j];
+        other[j] = t;
+        int ti = idx[i];
+        idx[i] = idx[j];
+        idx[j] = ti;
+    }
+
+    /**
+     * Numbers the nodes of given subtree in preorder, and records child numbers of each node.
+     * @param nd Current node
+     * @param nodes Numbered nodes
+     * @param lefts Left child numbers, NONE for points
+     * @param rights Right child numbers, NONE for points
+     * @return Height of the subtree
+     */
+    private static int flatten(KDNode nd, List<KDNode> nodes, List<Integer> lefts, List<Integer> rights) {
+        int id = nodes.size();
+        nodes.add(nd);
+        lefts.add(NONE);
+        rights.add(NONE);
+        int h = 0;
+        if (nd.getLeftChild() != null) {
+            lefts.set(id, nodes.size());
+            h = Math.max(h, flatten(nd.getLeftChild(), nodes, lefts, rights));
+        }
+        if (nd.getRightChild() != null) {
+            rights.set(id, nodes.size());
+            h = Math.max(h, flatten(nd.getRightChild(), nodes, lefts, rights));
+        }
+        return h + 1;
+    }
+
+    /**
+     * Computes van Emde Boas positions of a tree given in preorder numbering (root is 0).
+     * @param lc Left child numbers, NONE for points
+     * @param rc Right child numbers, NONE for points
+     * @param height Number of levels of the tree
+     * @return Layout position of each node
+     */
+    static int[] vebPositions(int[] lc, int[] rc, int height) {
+        int[] position = new int[lc.length];
+        if (lc.length > 0) {
+            vebLayout(0, height, lc, rc, position, new int[]{0});
+        }
+        return position;
+    }
+
+    /**
+     * Computes breadth-first positions of a tree given in preorder numbering (root is 0): level by level, left to right.
+     * @param lc Left child numbers, NONE for points
+     * @param rc Right child numbers, NONE for points
+     * @return Layout position of each node
+     */
+    static int[] breadthFirstPositions(int[] lc, int[] rc) {
+        int[] queue = new int[lc.length]; // Nodes in breadth-first order
+        int[] position = new int[lc.length];
+        int tail = lc.length > 0 ? 1 : 0;
+        for (int head = 0; head < tail; head++) {
+            int nd = queue[head];
+            position[nd] = head;
+            if (lc[nd] != NONE) {
+                queue[tail++] = lc[nd];
+            }
+            if (rc[nd] != NONE) {
+                queue[tail++] = rc[nd];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Lays out the subtree of given node, cut at given number of levels. Top half levels are laid out first, then each of the
+     * subtrees hanging below them, from left to right.
+     * @param nd Root of the subtree
+     * @param levels Number of levels to be laid out
+     * @param lc Left child numbers
+     * @param rc Right child numbers
+     * @param position Layout positions being filled
+     * @param next Next free position
+     */
+    private static void vebLayout(int nd, int levels, int[] lc, int[] rc, int[] position, int[] next) {
+        if (levels == 1) {
+            position[nd] = next[0]++;
+            return;
+        }
+        int top = levels / 2;
+        vebLayout(nd, top, lc, rc, position, next);
+        layoutBottom(nd, top, levels - top, lc, rc, position, next);
+    }
+
+    /**
+     * Lays out the subtrees rooted at given depth below given node, from left to right.
+     * @param nd Current node
+     * @param depth Remaining depth to the subtree roots
+     * @param levels Number of levels of each subtree
+     * @param lc Left child numbers
+     * @param rc Right child numbers
+     * @param position Layout positions being filled
+     * @param next Next free position
+     */
+    private static void layoutBottom(int nd, int depth, int levels, int[] lc, int[] rc, int[] position, int[] next) {
+        if (nd == NONE) {
+            return;
+        }
+        if (depth == 0) {
+            vebLayout(nd, levels, lc, rc, position, next);
+            return;
+        }
+        layoutBottom(lc[nd], depth - 1, levels, lc, rc, position, next);
+        layoutBottom(rc[nd], depth - 1, levels, lc, rc, position, next);
+    }
+
+    NodeStorage getNodes() {
+        return nodes;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a compact copy of this tree, with coordinates stored as 32-bit fixed-point offsets.
+     * @return Quantized copy of the tree
+     */
+    public QuantizedKDTree quantize() {
+        return new QuantizedKDTree(this);
+    }
+
+    /**
+     * @return Number of points in tree
+     */
+    public int size() {
+        return (nodes.size() + 1) / 2;
+    }
+
+    /**
+     * Searches the tree for given point as parameter.
+     * @param point The point going to be searched
+     * @return True if point is found
+     */
+    public boolean search(Point2D point) {
+        double x = point.getX(), y = point.getY();
+        int[] found = new int[1];
+        visitRuns(new double[]{x, y}, new double[]{x, y},
+                (from, to) -> found[0] += SCANNER.countRect(nodes, from, to, x, y, x, y));
+        return found[0] > 0;
+    }
+
+    /**
+     * Traverses the tree for a range query, and passes each run of a small subtree that may hold points in range to visitor.
+     * Runs are visited from left to right.
+     * @param lo Lower bounds of the range, X and Y
+     * @param hi Upper bounds of the range, X and Y
+     * @param visitor Receives first index and one past the last index of each run
+     */
+    private void visitRuns(double[] lo, double[] hi, RunVisitor visitor) {
+        if (nodes.size() == 0) {
+            return;
+        }
+        int[] stack = new int[height + 1];
+        int[] first = new int[height + 1]; // First point of each pending subtree
+        int[] count = new int[height + 1]; // Number of points of each pending subtree
+        int top = 0;
+        stack[top] = 0;
+        first[top] = 0;
+        count[top++] = size();
+        while (top > 0) {
+            top--;
+            int nd = stack[top], f = first[top], c = count[top];
+            if (c <= LEAF_SCAN) { // Small subtree, scan it's run
+                visitor.visit(f, f + c);
+                continue;
+            }
+            int axis = nodes.getAxis(nd);
+            double split = axis == 0 ? nodes.getX(nd) : nodes.getY(nd);
+            int ls = nodes.getLeftSize(nd);
+            // Right child is pushed first, so points are visited from left to right. Points on the split line can be on both sides
+            if (hi[axis] >= split) {
+                stack[top] = nodes.getRight(nd);
+                first[top] = f + ls;
+                count[top++] = c - ls;
+            }
+            if (lo[axis] <= split) {
+                stack[top] = nodes.getLeft(nd);
+                first[top] = f;
+                count[top++] = ls;
+            }
+        }
+    }
+
+    /**
+     * Receives runs of points from visitRuns.
+     */
+    private interface RunVisitor {
+        void visit(int from, int to);
+    }
+
+    /**
+     * Returns points in given range (closed).
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Points in range, from left to right
+     */
+    public List<Point2D> range(Point2D llc, Point2D urc) {
+        List<Point2D> found = new ArrayList<>();
+        double minX = llc.getX(), minY = llc.getY(), maxX = urc.getX(), maxY = urc.getY();
+        int[] hits = new int[LEAF_SCAN];
+        visitRuns(new double[]{minX, minY}, new double[]{maxX, maxY}, (from, to) -> {
+            int n = SCANNER.scanRect(nodes, from, to, minX, minY, maxX, maxY, hits);
+            for (int i = 0; i < n; i++) {
+                found.add(new Point2D.Double(nodes.getLeafX(hits[i]), nodes.getLeafY(hits[i])));
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Counts points in given range (closed), without creating point objects.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Number of points in range
+     */
+    public int rangeCount(Point2D llc, Point2D urc) {
+        double minX = llc.getX(), minY = llc.getY(), maxX = urc.getX(), maxY = urc.getY();
+        int[] total = new int[1];
+        visitRuns(new double[]{minX, minY}, new double[]{maxX, maxY},
+                (from, to) -> total[0] += SCANNER.countRect(nodes, from, to, minX, minY, maxX, maxY));
+        return total[0];
+    }
+
+    /**
+     * Returns points within given distance (closed) of a center point.
+     * @param center Center point
+     * @param radius Distance
+     * @return Points within distance, from left to right
+     */
+    public List<Point2D> withinDistance(Point2D center, double radius) {
+        List<Point2D> found = new ArrayList<>();
+        double cx = center.getX(), cy = center.getY(), radiusSq = radius * radius;
+        int[] hits = new int[LEAF_SCAN];
+        // Subtrees are pruned with the bounding box of the circle
+        visitRuns(new double[]{cx - radius, cy - radius}, new double[]{cx + radius, cy + radius}, (from, to) -> {
+            int n = SCANNER.scanRadius(nodes, from, to, cx, cy, radiusSq, hits);
+            for (int i = 0; i < n; i++) {
+                found.add(new Point2D.Double(nodes.getLeafX(hits[i]), nodes.getLeafY(hits[i])));
+            }
+        });
+        return found;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Node storage in on-heap primitive arrays.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class HeapNodeStorage implements NodeStorage {
+    private final double[] x;
+    private final double[] y;
+    private final int[] left;
+    private final int[] right;
+    private final byte[] axis;
+    private final int[] leftSize;
+    private final double[] leafX;
+    private final double[] leafY;
+
+    /**
+     * Constructor.
+     * @param nodeCount Number of nodes
+     */
+    public HeapNodeStorage(int nodeCount) {
+        this.x = new double[nodeCount];
+        this.y = new double[nodeCount];
+        this.left = new int[nodeCount];
+        this.right = new int[nodeCount];
+        this.axis = new byte[nodeCount];
+        this.leftSize = new int[nodeCount];
+        this.leafX = new double[(nodeCount + 1) / 2];
+        this.leafY = new double[(nodeCount + 1) / 2];
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double getX(int nd) {
+        return x[nd];
+    }
+
+    public double getY(int nd) {
+        return y[nd];
+    }
+
+    public int getLeft(int nd) {
+        return left[nd];
+    }
+
+    public int getRight(int nd) {
+        return right[nd];
+    }
+
+    public int getAxis(int nd) {
+        return axis[nd];
+    }
+
+    public void set(int nd, double x, double y, int left, int right, int axis) {
+        this.x[nd] = x;
+        this.y[nd] = y;
+        this.left[nd] = left;
+        this.right[nd] = right;
+        this.axis[nd] = (byte) axis;
+    }
+
+    public int getLeftSize(int nd) {
+        return leftSize[nd];
+    }
+
+    public void setLeftSize(int nd, int size) {
+        leftSize[nd] = size;
+    }
+
+    public double getLeafX(int i) {
+        return leafX[i];
+    }
+
+    public double getLeafY(int i) {
+        return leafY[i];
+    }
+
+    /**
+     * @return X coords of points in leaf order, for scanning a run without calls per point
+     */
+    double[] getLeafXs() {
+        return leafX;
+    }
+
+    /**
+     * @return Y coords of points in leaf order
+     */
+    double[] getLeafYs() {
+        return leafY;
+    }
+
+    public void setLeaf(int i, double x, double y) {
+        leafX[i] = x;
+        leafY[i] = y;
+    }
+}
@@ -0,0 +1,86 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the dual-tree spatial join with running one range query per point. Builds two trees of uniform points, finds all
+ * pairs within given distance both ways, checks that both find the same number of pairs, and reports the best time of each.
+ * Usage: java JoinBenchmark [points] [other points] [distance] [rounds]
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class JoinBenchmark {
+
+    /**
+     * Creates uniformly distributed points in [0, 1000) x [0, 1000).
+     * @param n Number of points
+     * @param random Random source
+     * @return Points
+     */
+    private static List<Point2D> uniform(int n, Random random) {
+        List<Point2D> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(new Point2D.Double(random.nextDouble() * 1000, random.nextDouble() * 1000));
+        }
+        return points;
+    }
+
+    /**
+     * Finds pairs with one range query per point of the smaller tree, filtered by distance.
+     * @param tree Tree to be queried
+     * @param points Points of the other tree
+     * @param distance Join distance (closed)
+     * @return Number of pairs
+     */
+    private static long nestedRange(KDTree tree, List<Point2D> points, double distance) {
+        double distanceSq = distance * distance;
+        long pairs = 0;
+        for (Point2D p : points) {
+            Iterator<Point2D> it = tree.rangeIterator(new Point2D.Double(p.getX() - distance, p.getY() - distance),
+                    new Point2D.Double(p.getX() + distance, p.getY() + distance));
+            while (it.hasNext()) {
+                if (it.next().distanceSq(p) <= distanceSq) {
+                    pairs++;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        double distance = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Random random = new Random(1);
+        KDTree a = KDTree.buildKDTree(uniform(n, random));
+        List<Point2D> otherPoints = uniform(m, random);
+        KDTree b = KDTree.buildKDTree(otherPoints);
+
+        long bestJoin = Long.MAX_VALUE, bestNested = Long.MAX_VALUE;
+        long joinPairs = 0, nestedPairs = 0;
+        for (int r = 0; r < rounds; r++) {
+            long[] count = new long[1];
+            long start = System.nanoTime();
+            a.join(b, distance, (p, q) -> count[0]++);
+            bestJoin = Math.min(bestJoin, System.nanoTime() - start);
+            joinPairs = count[0];
+
+            start = System.nanoTime();
+            nestedPairs = nestedRange(a, otherPoints, distance);
+            bestNested = Math.min(bestNested, System.nanoTime() - start);
+        }
+
+        System.out.printf("%d x %d points, distance %s, best of %d rounds%n", n, m, distance, rounds);
+        System.out.printf("  dual-tree join: %d pairs in %.1f ms%n", joinPairs, bestJoin / 1e6);
+        System.out.printf("  range query per point: %d pairs in %.1f ms%n", nestedPairs, bestNested / 1e6);
+        if (joinPairs != nestedPairs) {
+            System.out.println("Pair counts differ");
+            System.exit(1);
+        }
+    }
+}
@@ -1,11 +1,20 @@
 import java.awt.geom.Point2D;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A K-Dimensional Tree Implementation with specific functionalities like insert node, remove node, search range etc.
@@ -15,8 +24,61 @@ import java.util.stream.Collectors;
  */
 
 public class KDTree {
+    /**
+     * Enum declaration for choosing split axis of a line node.
+     */
+    public enum SplitRule {
+        Alternating { // Strict depth parity: vertical lines at even depths, horizontal lines at odd depths
+            int chooseAxis(List<Point2D> Px, List<Point2D> Py, int depth) {
+                return depth % 2;
+            }
+        },
+        MaxSpread { // Axis with larger extent of points
+            int chooseAxis(List<Point2D> Px, List<Point2D> Py, int depth) {
+                double spreadX = Px.get(Px.size() - 1).getX() - Px.get(0).getX();
+                double spreadY = Py.get(Py.size() - 1).getY() - Py.get(0).getY();
+                return spreadX >= spreadY ? 0 : 1;
+            }
+        },
+        MaxVariance { // Axis with larger variance of points
+            int chooseAxis(List<Point2D> Px, List<Point2D> Py, int depth) {
+                double sumX = 0, sumY = 0, sumXX = 0, sumYY = 0;
+                for (Point2D p : Px) {
+                    sumX += p.getX();
+                    sumY += p.getY();
+                    sumXX += p.getX() * p.getX();
+                    sumYY += p.getY() * p.getY();
+                }
+                int n = Px.size();
+                return sumXX - sumX * sumX / n >= sumYY - sumY * sumY / n ? 0 : 1;
+            }
+        };
+
+        /**
+         * Chooses split axis for a line node.
+         * @param Px X-Ordered points of the node
+         * @param Py Y-Ordered points of the node
+         * @param depth Depth of the node
+         * @return 0 for a vertical line, 1 for a horizontal line
+         */
+        abstract int chooseAxis(List<Point2D> Px, List<Point2D> Py, int depth);
+    }
+
+    private static final AtomicLong nextId = new AtomicLong(); // Source of tree ids
+
+    private final long id = nextId.getAndIncrement(); // Unique id, orders locks of trees taken together
     private KDNode root;
     private KDNode guard; // A guard node for safe calculation of root's region
+    private MutationLog log; // Write-ahead log of inserts & removes, null if tree is not persisted
+    private Point2D removedPoint; // Point taken by latest remove, with it's payload
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Guards the tree against background compaction
+    private boolean lazyRemoval; // Removed points are marked as tombstones instead of restructuring the tree
+    private double compactionThreshold; // Tombstone ratio that triggers a compaction
+    private boolean compactionScheduled;
+    private ExecutorService compactor; // Background compaction thread, created on first use
+    private int pointCount; // Number of points, excluding tombstones
+    private int tombstoneCount;
+    private SplitRule splitRule = SplitRule.Alternating; // Split axis selection of built and inserted lines
 
     /**
      * Returns minimum valued point in dimension d
@@ -82,9 +144,17 @@ public class KDTree {
      */
     private static List<Point2D> select(List<Point2D> target, List<Point2D> filter) {
         List<Point2D> toReturn = new ArrayList<>();
+        // Constant time lookups, keeps build O(nlogn). Points are counted by identity, so points with same coords
+        // are split between both sides exactly as in target.
+        Map<Point2D, Integer> targetCounts = new IdentityHashMap<>();
+        for (Point2D elem : target) {
+            targetCounts.merge(elem, 1, Integer::sum);
+        }
         for(Point2D elem: filter) {
-            if(target.contains(elem)) {
+            Integer count = targetCounts.get(elem);
+            if(count != null && count > 0) {
                 toReturn.add(elem);
+                targetCounts.put(elem, count - 1);
             }
         }
         return toReturn;
@@ -96,27 +166,28 @@ public class KDTree {
      * @param Px Current X-Ordered point list
      * @param Py Current Y-Ordered point list
      * @param depth Current Depth
+     * @param rule Split axis selection rule
      * @return Root of tree
      */
-    private static KDNode build(List<Point2D> Px, List<Point2D> Py, int depth) {
+    private static KDNode build(List<Point2D> Px, List<Point2D> Py, int depth, SplitRule rule) {
         int median;
         Point2D intersectingPoint;
         KDNode vLeft, vRight;
         NodeData.Direction currentDir;
         if (Px.size() == 1) {
             return createNode(null, null, new NodeData(NodeData.Direction.Point, Px.get(0), depth));
-        } else if (depth % 2 == 0) {
+        } else if (rule.chooseAxis(Px, Py, depth) == 0) {
             currentDir = NodeData.Direction.Vertical;
             median = (Px.size() - 1) / 2;
             intersectingPoint = Px.get(median);
-            vLeft = build(Px.subList(0, median + 1), select(Px.subList(0, median + 1), Py), depth + 1);
-            vRight = build(Px.subList(median + 1, Px.size()), select(Px.subList(median + 1, Px.size()), Py), depth + 1);
+            vLeft = build(Px.subList(0, median + 1), select(Px.subList(0, median + 1), Py), depth + 1, rule);
+            vRight = build(Px.subList(median + 1, Px.size()), select(Px.subList(median + 1, Px.size()), Py), depth + 1, rule);
         } else {
             currentDir = NodeData.Direction.Horizontal;
             median = (Py.size() - 1) / 2;
             intersectingPoint = Py.get(median);
-            vLeft = build(select(Py.subList(0, median + 1), Px), Py.subList(0, median + 1), depth + 1);
-            vRight = build(select(Py.subList(median + 1, Py.size()), Px), Py.subList(median + 1, Py.size()), depth + 1);
+            vLeft = build(select(Py.subList(0, median + 1), Px), Py.subList(0, median + 1), depth + 1, rule);
+            vRight = build(select(Py.subList(median + 1, Py.size()), Px), Py.subList(median + 1, Py.size()), depth + 1, rule);
         }
         return createNode(vLeft, vRight, new NodeData(currentDir, intersectingPoint, depth));
     }
@@ -134,15 +205,40 @@ public class KDTree {
             lc.setParent(parent);
         if (rc != null)
             rc.setParent(parent);
+        updateAggregate(parent);
         return parent;
     }
 
+    /**
+     * Recalculates weight aggregate of given node, from it's own point or from it's children's aggregates.
+     * Tombstones are left out.
+     * @param nd The node
+     */
+    private static void updateAggregate(KDNode nd) {
+        NodeData dt = nd.getData();
+        if (dt.getDirection() == NodeData.Direction.Point) {
+            dt.getAggregate().set(WeightedPoint.weightOf(dt.getPoint()), !dt.isDeleted());
+        } else {
+            dt.getAggregate().set(nd.getLeftChild().getData().getAggregate(), nd.getRightChild().getData().getAggregate());
+        }
+    }
+
     /**
      * Creates a K-Dimensional tree from parameter point list. Calculates regions after building.
      * @param fileName The point list's file name
      * @return  A K-Dimensional Tree from list of points
      */
     public static KDTree buildKDTree(String fileName) {
+        return buildKDTree(fileName, SplitRule.Alternating);
+    }
+
+    /**
+     * Creates a K-Dimensional tree from parameter point list, choosing split axes with given rule. Calculates regions after building.
+     * @param fileName The point list's file name
+     * @param rule Split axis selection rule
+     * @return  A K-Dimensional Tree from list of points
+     */
+    public static KDTree buildKDTree(String fileName, SplitRule rule) {
         List<String> pointsList = new ArrayList<>();
         ArrayList<Point2D> allPoints = new ArrayList<>();
 
@@ -156,24 +252,50 @@ public class KDTree {
             line = line.replaceAll("[ ]", "\t");
             String[] points = line.split("\t");
             try {
-                allPoints.add(new Point2D.Double(Double.parseDouble(points[0]), Double.parseDouble(points[1])));
+                if (points.length >= 4) { // Point with a payload
+                    allPoints.add(new WeightedPoint(Double.parseDouble(points[0]), Double.parseDouble(points[1]),
+                            Long.parseLong(points[2]), Double.parseDouble(points[3])));
+                } else {
+                    allPoints.add(new Point2D.Double(Double.parseDouble(points[0]), Double.parseDouble(points[1])));
+                }
             } catch(NumberFormatException e){
                 System.err.println("\nInvalid file content for points");
             }
         }
 
+        return buildKDTree(allPoints, rule);
+    }
+
+    /**
+     * Creates a K-Dimensional tree from given points. Calculates regions after building.
+     * @param points Points of the tree
+     * @return A K-Dimensional Tree from list of points
+     */
+    public static KDTree buildKDTree(List<Point2D> points) {
+        return buildKDTree(points, SplitRule.Alternating);
+    }
+
+    /**
+     * Creates a K-Dimensional tree from given points, choosing split axes with given rule. Calculates regions after building.
+     * @param points Points of the tree
+     * @param rule Split axis selection rule, also used for later inserts
+     * @return A K-Dimensional Tree from list of points
+     */
+    public static KDTree buildKDTree(List<Point2D> points, SplitRule rule) {
         KDTree tree = new KDTree();
-        if(allPoints.size() == 0) { // Return empty tree
+        tree.splitRule = rule;
+        if(points.size() == 0) { // Return empty tree
             return tree;
         }
 
         ///// Preprocessing
-        List<Point2D> allPoints2 = new ArrayList<>();
-        allPoints2.addAll(allPoints);
+        List<Point2D> allPoints = new ArrayList<>(points);
+        List<Point2D> allPoints2 = new ArrayList<>(points);
         allPoints.sort(Comparator.comparingDouble(Point2D::getX));
         allPoints2.sort(Comparator.comparingDouble(Point2D::getY));
-        tree.setRoot(build(allPoints, allPoints2, 0));
+        tree.setRoot(build(allPoints, allPoints2, 0, rule));
         tree.calculateRegions();
+        tree.pointCount = points.size();
         return tree;
     }
 
@@ -198,16 +320,71 @@ public class KDTree {
     }
 
 
+    /**
+     * @return Root of tree, null if tree is empty
+     */
+    KDNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Attaches a write-ahead log to tree. All following inserts and removes are appended to it. When insert or remove
+     * returns, the mutation is on disk; the log is committed after tree's lock is released, so concurrent writers share an
+     * fsync.
+     * @param log The log, null for disabling persistence
+     */
+    public void setLog(MutationLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Appends a mutation to attached log. If log asks for a snapshot, copies current points, which is safe as caller holds
+     * the write lock, and leaves writing them to the log's background thread.
+     * @param op Operation, MutationLog.INSERT or MutationLog.REMOVE
+     * @param point Point of the operation
+     * @return Sequence number of the record to be committed, 0 if tree has no log
+     */
+    private long logMutation(byte op, Point2D point) {
+        if (log == null) {
+            return 0;
+        }
+        try {
+            long seq = log.append(op, point);
+            if (log.isSnapshotDue()) {
+                log.snapshotInBackground(getPoints());
+            }
+            return seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits until a logged mutation is durable. Must be called without holding tree's lock.
+     * @param seq Sequence number returned by logMutation
+     */
+    private void commitMutation(long seq) {
+        if (seq == 0) {
+            return;
+        }
+        try {
+            log.commit(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Preorder traverse the tree from given node as parameter.
      * @param nd The node will be visited
+     * @param out Output stream
      */
-    private void preOrderPrint(KDNode nd) {
+    private void preOrderPrint(KDNode nd, PrintStream out) {
         if (nd != null) {
             //Visit the node by Printing the node data
-            System.out.println(nd.getData());
-            preOrderPrint(nd.getLeftChild());
-            preOrderPrint(nd.getRightChild());
+            out.println(nd.getData());
+            preOrderPrint(nd.getLeftChild(), out);
+            preOrderPrint(nd.getRightChild(), out);
         }
     }
 
@@ -215,31 +392,52 @@ public class KDTree {
      * Prints tree layout to console.
      */
     public void displayTree() {
-        if(root == null) {
-            System.out.println("Tree is empty!");
-            return;
+        displayTree(System.out);
+    }
+
+    /**
+     * Prints tree layout to given stream.
+     * @param out Output stream
+     */
+    public void displayTree(PrintStream out) {
+        lock.readLock().lock();
+        try {
+            if(root == null) {
+                out.println("Tree is empty!");
+                return;
+            }
+            preOrderPrint(root, out);
+        } finally {
+            lock.readLock().unlock();
         }
-        preOrderPrint(root);
     }
 
     /**
      * Tries going to leftmost nodes in given dimension nodes. In other dimension nodes, continues searching in both children.
      * @param nd Current node
      * @param d Dimension
-     * @param dpth Current depth
      * @return Found point
      */
-    private Point2D innerFindMin(KDNode nd, int d, int dpth) {
-        if (nd == null) {
+    private Point2D innerFindMin(KDNode nd, int d) {
+        if (nd == null || nd.getData().isDeleted()) {
             return new Point2D.Double(Double.MAX_VALUE, Double.MAX_VALUE);
         }
-        if (dpth % 2 == d) {
+        if (nd.getData().getAxis() == d) {
             if (nd.getLeftChild() == null) {
                 return nd.getData().getPoint();
             }
-            return innerFindMin(nd.getLeftChild(), d, dpth + 1);
+            Point2D found = innerFindMin(nd.getLeftChild(), d);
+            if (tombstoneCount > 0 && found.getX() == Double.MAX_VALUE) { // Whole left side may be removed
+                found = innerFindMin(nd.getRightChild(), d);
+            }
+            return found;
         } else {
-            return min(nd.getData().getPoint(), innerFindMin(nd.getLeftChild(), d, dpth + 1), innerFindMin(nd.getRightChild(), d, dpth + 1), d);
+            Point2D own = nd.getData().getPoint();
+            if (nd.getData().getDirection() != NodeData.Direction.Point) {
+                // Line's point is a copy of a point node's, which might be removed since the line is created
+                own = new Point2D.Double(Double.MAX_VALUE, Double.MAX_VALUE);
+            }
+            return min(own, innerFindMin(nd.getLeftChild(), d), innerFindMin(nd.getRightChild(), d), d);
         }
     }
 
@@ -249,27 +447,40 @@ public class KDTree {
      * @return Found point
      */
     public Point2D findMin(int d) {
-        return innerFindMin(this.root, d, 0);
+        lock.readLock().lock();
+        try {
+            return innerFindMin(this.root, d);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Tries going to rightmost nodes in given dimension nodes. In other dimension nodes, continues searching in both children.
      * @param nd Current node
      * @param d Dimension
-     * @param dpth Current depth
      * @return Found point
      */
-    private Point2D innerFindMax(KDNode nd, int d, int dpth) {
-        if (nd == null) {
+    private Point2D innerFindMax(KDNode nd, int d) {
+        if (nd == null || nd.getData().isDeleted()) {
             return new Point2D.Double(-Double.MAX_VALUE, -Double.MAX_VALUE);
         }
-        if (dpth % 2 == d) {
+        if (nd.getData().getAxis() == d) {
             if (nd.getRightChild() == null) {
                 return nd.getData().getPoint();
             }
-            return innerFindMax(nd.getRightChild(), d, dpth + 1);
+            Point2D found = innerFindMax(nd.getRightChild(), d);
+            if (tombstoneCount > 0 && found.getX() == -Double.MAX_VALUE) { // Whole right side may be removed
+                found = innerFindMax(nd.getLeftChild(), d);
+            }
+            return found;
         } else {
-            return max(nd.getData().getPoint(), innerFindMax(nd.getLeftChild(), d, dpth + 1), innerFindMax(nd.getRightChild(), d, dpth + 1), d);
+            Point2D own = nd.getData().getPoint();
+            if (nd.getData().getDirection() != NodeData.Direction.Point) {
+                // Line's point is a copy of a point node's, which might be removed since the line is created
+                own = new Point2D.Double(-Double.MAX_VALUE, -Double.MAX_VALUE);
+            }
+            return max(own, innerFindMax(nd.getLeftChild(), d), innerFindMax(nd.getRightChild(), d), d);
         }
     }
 
@@ -279,33 +490,34 @@ public class KDTree {
      * @return Found point
      */
     public Point2D findMax(int d) {
-        return innerFindMax(this.root, d, 0);
+        lock.readLock().lock();
+        try {
+            return innerFindMax(this.root, d);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Traverses the tree for finding related point in tree.
      * @param point The point going to be searched
      * @param nd Current node
-     * @param dpth Current depth
      * @return The point found in tree, otherwise null
      */
-    private Point2D innerSearch(Point2D point, KDNode nd, int dpth) {
+    private Point2D innerSearch(Point2D point, KDNode nd) {
         if (nd.getData().getDirection() != NodeData.Direction.Point) { // Current node is not point, continue searching
-            if (dpth % 2 == 0) {
-                if (point.getX() <= nd.getData().getPoint().getX()) {
-                    return innerSearch(point, nd.getLeftChild(), dpth + 1);
-                } else {
-                    return innerSearch(point, nd.getRightChild(), dpth + 1);
-                }
-            } else {
-                if (point.getY() <= nd.getData().getPoint().getY()) {
-                    return innerSearch(point, nd.getLeftChild(), dpth + 1);
-                } else {
-                    return innerSearch(point, nd.getRightChild(), dpth + 1);
-                }
+            double v = nd.getData().getAxis() == 0 ? point.getX() : point.getY();
+            double line = nd.getData().getAxis() == 0 ? nd.getData().getPoint().getX() : nd.getData().getPoint().getY();
+            if (v < line) {
+                return innerSearch(point, nd.getLeftChild());
+            } else if (v > line) {
+                return innerSearch(point, nd.getRightChild());
             }
+            // Point is on the line, points with same coord can be on both sides
+            Point2D found = innerSearch(point, nd.getLeftChild());
+            return found != null ? found : innerSearch(point, nd.getRightChild());
         } else { // A point is reached, check if it's same with our point coordinates
-            if (nd.getData().getPoint().getX() == point.getX() && nd.getData().getPoint().getY() == point.getY()) {
+            if (!nd.getData().isDeleted() && nd.getData().getPoint().getX() == point.getX() && nd.getData().getPoint().getY() == point.getY()) {
                 return nd.getData().getPoint(); // Found
             } else {
                 return null; // Not found
@@ -320,40 +532,95 @@ public class KDTree {
      * @return Point of found node in tree, null if point is not found
      */
     public Point2D search(Point2D point) {
-        return innerSearch(point, root, 0);
+        lock.readLock().lock();
+        try {
+            return root == null ? null : innerSearch(point, root);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
     /**
      * Depth first traverse the tree from given node as parameter. Print data if visited node is a point.
      * @param nd The node will be visited
+     * @param out Output stream
      */
-    private void depthFirstPrint(KDNode nd) {
-        if (nd.getData().getDirection() == NodeData.Direction.Point) { // A point is reached
-            System.out.printf("(%s,%s) ", nd.getData().getPoint().getX(), nd.getData().getPoint().getY());
+    private void depthFirstPrint(KDNode nd, PrintStream out) {
+        if (nd.getData().getDirection() == NodeData.Direction.Point && !nd.getData().isDeleted()) { // A point is reached
+            out.printf("(%s,%s) ", nd.getData().getPoint().getX(), nd.getData().getPoint().getY());
         }
 
         // Continue searching a point
         if (nd.getLeftChild() != null) {
-            depthFirstPrint(nd.getLeftChild());
+            depthFirstPrint(nd.getLeftChild(), out);
         }
 
         if (nd.getRightChild() != null) {
-            depthFirstPrint(nd.getRightChild());
+            depthFirstPrint(nd.getRightChild(), out);
         }
     }
 
 
+    /**
+     * Depth first traverse the tree from given node as parameter. Collects point nodes' points to given list.
+     * @param nd The node will be visited
+     * @param points Collected points
+     */
+    private void depthFirstCollect(KDNode nd, List<Point2D> points) {
+        if (nd.getData().getDirection() == NodeData.Direction.Point && !nd.getData().isDeleted()) { // A point is reached
+            points.add(nd.getData().getPoint());
+        }
+
+        if (nd.getLeftChild() != null) {
+            depthFirstCollect(nd.getLeftChild(), points);
+        }
+
+        if (nd.getRightChild() != null) {
+            depthFirstCollect(nd.getRightChild(), points);
+        }
+    }
+
+    /**
+     * Returns all points in the tree, from left to right.
+     * @return List of points
+     */
+    public List<Point2D> getPoints() {
+        lock.readLock().lock();
+        try {
+            List<Point2D> points = new ArrayList<>();
+            if (root != null) {
+                depthFirstCollect(root, points);
+            }
+            return points;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Prints all point nodes in the tree to console.
      */
     public void displayPoints() {
-        if(root==null) {
-            System.out.println("There are no points in tree!");
-            return;
+        displayPoints(System.out);
+    }
+
+    /**
+     * Prints all point nodes in the tree to given stream.
+     * @param out Output stream
+     */
+    public void displayPoints(PrintStream out) {
+        lock.readLock().lock();
+        try {
+            if(root==null) {
+                out.println("There are no points in tree!");
+                return;
+            }
+            this.depthFirstPrint(root, out);
+            out.println();
+        } finally {
+            lock.readLock().unlock();
         }
-        this.depthFirstPrint(root);
-        System.out.println();
     }
 
     /**
@@ -364,15 +631,15 @@ public class KDTree {
         if (prnt.getLeftChild() != null) { // Calculate left child's regions
             KDNode ls = prnt.getLeftChild();
             RectangularHalfPlane latestArea = prnt.getData().getLeftRegion();
-            ls.getData().setLeftRegion(latestArea.intersectToLeft(ls.getData().getPoint(), ls.getData().getDepth() % 2));
-            ls.getData().setRightRegion(latestArea.intersectToRight(ls.getData().getPoint(), ls.getData().getDepth() % 2));
+            ls.getData().setLeftRegion(latestArea.intersectToLeft(ls.getData().getPoint(), ls.getData().getAxis()));
+            ls.getData().setRightRegion(latestArea.intersectToRight(ls.getData().getPoint(), ls.getData().getAxis()));
         }
 
         if (prnt.getRightChild() != null) { // Calculate right child's regions
             KDNode rs = prnt.getRightChild();
             RectangularHalfPlane latestArea = prnt.getData().getRightRegion();
-            rs.getData().setLeftRegion(latestArea.intersectToLeft(rs.getData().getPoint(), rs.getData().getDepth() % 2));
-            rs.getData().setRightRegion(latestArea.intersectToRight(rs.getData().getPoint(), rs.getData().getDepth() % 2));
+            rs.getData().setLeftRegion(latestArea.intersectToLeft(rs.getData().getPoint(), rs.getData().getAxis()));
+            rs.getData().setRightRegion(latestArea.intersectToRight(rs.getData().getPoint(), rs.getData().getAxis()));
         }
 
         // Continue traversing the tree
@@ -390,8 +657,8 @@ public class KDTree {
      */
     private void calculateRegions() {
         RectangularHalfPlane wholeArea = new RectangularHalfPlane(); // Parent area to be intersected is whole area
-        root.getData().setLeftRegion(wholeArea.intersectToLeft(root.getData().getPoint(), 0));
-        root.getData().setRightRegion(wholeArea.intersectToRight(root.getData().getPoint(), 0));
+        root.getData().setLeftRegion(wholeArea.intersectToLeft(root.getData().getPoint(), root.getData().getAxis()));
+        root.getData().setRightRegion(wholeArea.intersectToRight(root.getData().getPoint(), root.getData().getAxis()));
         innerCalculateRegions(root);
     }
 
@@ -399,23 +666,75 @@ public class KDTree {
      * Checks if range contains left or right regions of current node. Continues searching with result of this query.
      * @param V Current Node
      * @param R Range to be searched
+     * @param out Output stream
      */
-    private void SearchKDTree(KDNode V, RectangularHalfPlane R) {
+    private void SearchKDTree(KDNode V, RectangularHalfPlane R, PrintStream out) {
         if (V.getData().getDirection() == NodeData.Direction.Point) { // A valid point is found
-            if (R.contains(V.getData().getPoint()))
-                System.out.printf("(%s,%s) ", V.getData().getPoint().getX(), V.getData().getPoint().getY());
+            if (!V.getData().isDeleted() && R.contains(V.getData().getPoint()))
+                out.printf("(%s,%s) ", V.getData().getPoint().getX(), V.getData().getPoint().getY());
         } else {
             if (R.contains(V.getData().getLeftRegion())) { // Left subtree is fully contained in range, print all points.
-                depthFirstPrint(V.getLeftChild());
+                depthFirstPrint(V.getLeftChild(), out);
             } else if (R.intersects(V.getData().getLeftRegion())) { // Continue searching
-                SearchKDTree(V.getLeftChild(), R);
+                SearchKDTree(V.getLeftChild(), R, out);
             }
 
             if (R.contains(V.getData().getRightRegion())) { // Right subtree is fully contained in range, print all points.
-                depthFirstPrint(V.getRightChild());
+                depthFirstPrint(V.getRightChild(), out);
             } else if (R.intersects(V.getData().getRightRegion())) { // Continue searching
-                SearchKDTree(V.getRightChild(), R);
+                SearchKDTree(V.getRightChild(), R, out);
+            }
+        }
+    }
+
+    /**
+     * Counts nodes that SearchKDTree visits for given range, including nodes of fully contained subtrees.
+     * @param V Current Node
+     * @param R Range to be searched
+     * @return Number of visited nodes
+     */
+    private int countVisits(KDNode V, RectangularHalfPlane R) {
+        int visits = 1;
+        if (V.getData().getDirection() != NodeData.Direction.Point) {
+            if (R.contains(V.getData().getLeftRegion())) {
+                visits += countNodes(V.getLeftChild());
+            } else if (R.intersects(V.getData().getLeftRegion())) {
+                visits += countVisits(V.getLeftChild(), R);
             }
+
+            if (R.contains(V.getData().getRightRegion())) {
+                visits += countNodes(V.getRightChild());
+            } else if (R.intersects(V.getData().getRightRegion())) {
+                visits += countVisits(V.getRightChild(), R);
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * @param nd Root of the subtree
+     * @return Number of nodes in given subtree
+     */
+    private static int countNodes(KDNode nd) {
+        if (nd.getData().getDirection() == NodeData.Direction.Point) {
+            return 1;
+        }
+        return 1 + countNodes(nd.getLeftChild()) + countNodes(nd.getRightChild());
+    }
+
+    /**
+     * Returns the number of nodes a range query visits, for comparing split rules on a dataset.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Number of visited nodes
+     */
+    public int rangeVisits(Point2D llc, Point2D urc) {
+        RectangularHalfPlane range = new RectangularHalfPlane(llc.getX(), llc.getY(), urc.getX(), urc.getY());
+        lock.readLock().lock();
+        try {
+            return root == null ? 0 : countVisits(root, range);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -425,13 +744,424 @@ public class KDTree {
      * @param urc Upper Right Corner Point
      */
     public void printRange(Point2D llc, Point2D urc) {
+        printRange(llc, urc, System.out);
+    }
+
+    /**
+     * Prints points in given range to given stream.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @param out Output stream
+     */
+    public void printRange(Point2D llc, Point2D urc, PrintStream out) {
         if(llc.getX() == urc.getX() || llc.getY() == urc.getY()) {
-            System.out.println("Range can't be a line or a point!");
+            out.println("Range can't be a line or a point!");
             return;
         }
         RectangularHalfPlane range = new RectangularHalfPlane(llc.getX(), llc.getY(), urc.getX(), urc.getY());
-        SearchKDTree(root, range);
-        System.out.println();
+        lock.readLock().lock();
+        try {
+            if (root != null) {
+                SearchKDTree(root, range, out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        out.println();
+    }
+
+    /**
+     * Adds weights of points in range to result. Aggregates of fully contained subtrees are taken as they are, without
+     * visiting their points.
+     * @param V Current Node
+     * @param R Range to be searched
+     * @param result Aggregate of points found so far
+     */
+    private void innerAggregate(KDNode V, RectangularHalfPlane R, Aggregate result) {
+        if (V.getData().getDirection() == NodeData.Direction.Point) {
+            if (!V.getData().isDeleted() && R.contains(V.getData().getPoint())) {
+                result.add(WeightedPoint.weightOf(V.getData().getPoint()));
+            }
+        } else {
+            if (R.contains(V.getData().getLeftRegion())) {
+                result.add(V.getLeftChild().getData().getAggregate());
+            } else if (R.intersects(V.getData().getLeftRegion())) {
+                innerAggregate(V.getLeftChild(), R, result);
+            }
+
+            if (R.contains(V.getData().getRightRegion())) {
+                result.add(V.getRightChild().getData().getAggregate());
+            } else if (R.intersects(V.getData().getRightRegion())) {
+                innerAggregate(V.getRightChild(), R, result);
+            }
+        }
+    }
+
+    /**
+     * Returns count, sum, minimum and maximum of weights of points in given range (closed). Points without a payload weigh 0.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Aggregate of points in range
+     */
+    public Aggregate rangeAggregate(Point2D llc, Point2D urc) {
+        RectangularHalfPlane range = new RectangularHalfPlane(llc.getX(), llc.getY(), urc.getX(), urc.getY());
+        Aggregate result = new Aggregate();
+        lock.readLock().lock();
+        try {
+            if (root != null) {
+                innerAggregate(root, range, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Grid of a histogram query. Cells are half open, except the last column and row, which also hold the grid's upper borders.
+     */
+    private static class Grid {
+        private final RectangularHalfPlane bounds;
+        private final int[][] counts; // [column][row]
+        private final double cellWidth, cellHeight;
+
+        private Grid(RectangularHalfPlane bounds, int columns, int rows) {
+            this.bounds = bounds;
+            this.counts = new int[columns][rows];
+            this.cellWidth = (bounds.getMaxX() - bounds.getMinX()) / columns;
+            this.cellHeight = (bounds.getMaxY() - bounds.getMinY()) / rows;
+        }
+
+        private int column(double x) {
+            return Math.min(counts.length - 1, (int) ((x - bounds.getMinX()) / cellWidth));
+        }
+
+        private int row(double y) {
+            return Math.min(counts[0].length - 1, (int) ((y - bounds.getMinY()) / cellHeight));
+        }
+    }
+
+    /**
+     * Counts points of given subtree into grid cells. A subtree whose region lies in a single cell is counted as a whole
+     * with it's aggregate, without visiting it's points.
+     * @param V Current Node
+     * @param region Region of V
+     * @param grid Grid of counts
+     */
+    private void innerHistogram(KDNode V, RectangularHalfPlane region, Grid grid) {
+        NodeData dt = V.getData();
+        if (dt.getDirection() == NodeData.Direction.Point) {
+            Point2D p = dt.getPoint();
+            if (!dt.isDeleted() && grid.bounds.contains(p)) {
+                grid.counts[grid.column(p.getX())][grid.row(p.getY())]++;
+            }
+            return;
+        }
+        if (!grid.bounds.intersects(region)) {
+            return;
+        }
+        // Cell index grows monotonically with coords, so a region with both corners in same cell is inside that cell
+        if (grid.bounds.contains(region)) {
+            int column = grid.column(region.getMinX()), row = grid.row(region.getMinY());
+            if (column == grid.column(region.getMaxX()) && row == grid.row(region.getMaxY())) {
+                grid.counts[column][row] += (int) dt.getAggregate().getCount();
+                return;
+            }
+        }
+        innerHistogram(V.getLeftChild(), dt.getLeftRegion(), grid);
+        innerHistogram(V.getRightChild(), dt.getRightRegion(), grid);
+    }
+
+    /**
+     * Counts points in each cell of a grid over given rectangle, in a single traversal of the tree. Rectangle is split into
+     * equal cells; points on a border between two cells are counted in the upper one, points on the rectangle's border are
+     * counted in the closest cell.
+     * @param llc Lower Left Corner Point of the grid
+     * @param urc Upper Right Corner Point of the grid
+     * @param columns Number of cells along X axis
+     * @param rows Number of cells along Y axis
+     * @return Point counts, indexed by [column][row], column 0 and row 0 at lower left corner
+     */
+    public int[][] histogram(Point2D llc, Point2D urc, int columns, int rows) {
+        if (columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Grid must have at least one column and one row");
+        }
+        Grid grid = new Grid(new RectangularHalfPlane(llc.getX(), llc.getY(), urc.getX(), urc.getY()), columns, rows);
+        lock.readLock().lock();
+        try {
+            if (root != null) {
+                innerHistogram(root, new RectangularHalfPlane(), grid);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return grid.counts;
+    }
+
+    /**
+     * State of a running nearest neighbour query.
+     */
+    private static class NearestSearch {
+        private final Point2D query;
+        private final double factorSq; // (1 + epsilon)^2
+        private final int maxVisits;
+        private Point2D best;
+        private double bestDistSq = Double.POSITIVE_INFINITY;
+        private int visited;
+        private boolean exact = true;
+
+        private NearestSearch(Point2D query, double epsilon, int maxVisits) {
+            this.query = query;
+            this.factorSq = (1 + epsilon) * (1 + epsilon);
+            this.maxVisits = maxVisits;
+        }
+    }
+
+    /**
+     * Visits closer child first. A child is pruned if it's region is farther than best/(1+epsilon). Search stops when
+     * visit budget is used up, but only after first point is reached, so there is always an answer.
+     * @param V Current Node
+     * @param s Query state
+     */
+    private void innerNearest(KDNode V, NearestSearch s) {
+        if (s.visited >= s.maxVisits && s.best != null) { // Budget is used up, unvisited nodes may contain a closer point
+            s.exact = false;
+            return;
+        }
+        s.visited++;
+        NodeData dt = V.getData();
+        if (dt.getDirection() == NodeData.Direction.Point) {
+            if (dt.isDeleted()) {
+                return;
+            }
+            double d = dt.getPoint().distanceSq(s.query);
+            if (d < s.bestDistSq) {
+                s.bestDistSq = d;
+                s.best = dt.getPoint();
+            }
+            return;
+        }
+
+        double dl = dt.getLeftRegion().distanceSq(s.query);
+        double dr = dt.getRightRegion().distanceSq(s.query);
+        boolean leftFirst = dl <= dr;
+        nearestChild(leftFirst ? V.getLeftChild() : V.getRightChild(), leftFirst ? dl : dr, s);
+        nearestChild(leftFirst ? V.getRightChild() : V.getLeftChild(), leftFirst ? dr : dl, s);
+    }
+
+    /**
+     * Continues nearest neighbour query in given child, unless it's region can be pruned.
+     * @param child Child node
+     * @param regionDistSq Squared distance between query point and child's region
+     * @param s Query state
+     */
+    private void nearestChild(KDNode child, double regionDistSq, NearestSearch s) {
+        if (regionDistSq * s.factorSq >= s.bestDistSq) {
+            if (regionDistSq < s.bestDistSq) { // Pruned only because of epsilon
+                s.exact = false;
+            }
+            return;
+        }
+        innerNearest(child, s);
+    }
+
+    /**
+     * Searches the tree for an approximate nearest neighbour of given point. Found point is at most (1+epsilon) times
+     * farther than the nearest one, unless visit budget is used up first.
+     * @param point Query point
+     * @param epsilon Allowed relative error, 0 for exact search
+     * @param maxVisits Maximum number of nodes to be visited, exceeded only by the first root-to-leaf walk
+     * @return Found point and it's distance, null if tree is empty
+     */
+    public NearestResult nearest(Point2D point, double epsilon, int maxVisits) {
+        NearestSearch s = new NearestSearch(point, epsilon, maxVisits);
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return null;
+            }
+            innerNearest(root, s);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (s.best == null) {
+            return null;
+        }
+        return new NearestResult(s.best, Math.sqrt(s.bestDistSq), s.exact, s.visited);
+    }
+
+    /**
+     * Searches the tree for the nearest neighbour of given point.
+     * @param point Query point
+     * @return Found point and it's distance, null if tree is empty
+     */
+    public NearestResult nearest(Point2D point) {
+        return nearest(point, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a lazy cursor over points in increasing distance from given point. Tree is searched only as far as the
+     * consumer pulls points, so the cost depends on the number of points consumed, not on the size of the tree.
+     * @param point Query point
+     * @return Iterator of points, their distances and visited node counts, closest first
+     */
+    public Iterator<NearestResult> nearestIterator(Point2D point) {
+        lock.readLock().lock();
+        try {
+            return new NearestIterator(root, point, lock.readLock());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns region of a child for the spatial join. A point node's region is shrunk to the point itself.
+     * @param child Child node
+     * @param region Child's region
+     * @return Region to be compared
+     */
+    private static RectangularHalfPlane joinRegion(KDNode child, RectangularHalfPlane region) {
+        NodeData dt = child.getData();
+        if (dt.getDirection() == NodeData.Direction.Point) {
+            Point2D p = dt.getPoint();
+            return new RectangularHalfPlane(p.getX(), p.getY(), p.getX(), p.getY());
+        }
+        return region;
+    }
+
+    /**
+     * Walks two trees together, and reports point pairs within given distance. A node pair is pruned if their regions are
+     * farther apart than the distance. Otherwise the shallower node (or the only line node) is opened.
+     * @param U Current node of first tree
+     * @param ru Region of U
+     * @param V Current node of second tree
+     * @param rv Region of V
+     * @param distanceSq Squared join distance
+     * @param action Receives pairs
+     */
+    private static void innerJoin(KDNode U, RectangularHalfPlane ru, KDNode V, RectangularHalfPlane rv, double distanceSq,
+                                  BiConsumer<Point2D, Point2D> action) {
+        if (ru.distanceSq(rv) > distanceSq) {
+            return;
+        }
+        NodeData du = U.getData(), dv = V.getData();
+        boolean uPoint = du.getDirection() == NodeData.Direction.Point;
+        boolean vPoint = dv.getDirection() == NodeData.Direction.Point;
+        if (uPoint && vPoint) {
+            // Regions of points are the points themselves, so pair is already within distance
+            if (!du.isDeleted() && !dv.isDeleted()) {
+                action.accept(du.getPoint(), dv.getPoint());
+            }
+        } else if (vPoint || (!uPoint && du.getDepth() <= dv.getDepth())) { // Open U
+            if (U.getLeftChild() != null) {
+                innerJoin(U.getLeftChild(), joinRegion(U.getLeftChild(), du.getLeftRegion()), V, rv, distanceSq, action);
+            }
+            if (U.getRightChild() != null) {
+                innerJoin(U.getRightChild(), joinRegion(U.getRightChild(), du.getRightRegion()), V, rv, distanceSq, action);
+            }
+        } else { // Open V
+            if (V.getLeftChild() != null) {
+                innerJoin(U, ru, V.getLeftChild(), joinRegion(V.getLeftChild(), dv.getLeftRegion()), distanceSq, action);
+            }
+            if (V.getRightChild() != null) {
+                innerJoin(U, ru, V.getRightChild(), joinRegion(V.getRightChild(), dv.getRightRegion()), distanceSq, action);
+            }
+        }
+    }
+
+    /**
+     * Finds all pairs of points, one from this tree and one from other tree, within given (Euclidean) distance of each other.
+     * Both trees are walked together, so node pairs farther apart than the distance are pruned at once, instead of running a
+     * range query per point. Read locks of both trees are held during the join, so the action must not modify either tree.
+     * @param other Second tree, can be this tree for a self join
+     * @param distance Join distance (closed)
+     * @param action Receives each pair, point of this tree first
+     */
+    public void join(KDTree other, double distance, BiConsumer<Point2D, Point2D> action) {
+        // Locks are always taken in order of tree id, so two opposite joins can't deadlock with a waiting writer
+        boolean thisFirst = this.id <= other.id;
+        ReentrantReadWriteLock first = thisFirst ? this.lock : other.lock;
+        ReentrantReadWriteLock second = thisFirst ? other.lock : this.lock;
+        first.readLock().lock();
+        try {
+            second.readLock().lock();
+            try {
+                if (this.root == null || other.root == null) {
+                    return;
+                }
+                innerJoin(this.root, joinRegion(this.root, new RectangularHalfPlane()), other.root,
+                        joinRegion(other.root, new RectangularHalfPlane()), distance * distance, action);
+            } finally {
+                second.readLock().unlock();
+            }
+        } finally {
+            first.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a lazy cursor over points in given range. Tree is traversed only as far as the consumer pulls points,
+     * and the cursor splits at tree nodes for parallel processing.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Spliterator of points in range, from left to right
+     */
+    public Spliterator<Point2D> rangeSpliterator(Point2D llc, Point2D urc) {
+        lock.readLock().lock();
+        try {
+            return new RangeSpliterator(root, new RectangularHalfPlane(llc.getX(), llc.getY(), urc.getX(), urc.getY()), lock.readLock());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a lazy iterator over points in given range. Traversal stops as soon as the iterator is no longer advanced.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Iterator of points in range, from left to right
+     */
+    public Iterator<Point2D> rangeIterator(Point2D llc, Point2D urc) {
+        return Spliterators.iterator(rangeSpliterator(llc, urc));
+    }
+
+    /**
+     * Returns points in given range as a stream.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @param parallel True for a parallel stream
+     * @return Stream of points in range
+     */
+    public Stream<Point2D> rangeStream(Point2D llc, Point2D urc, boolean parallel) {
+        return StreamSupport.stream(rangeSpliterator(llc, urc), parallel);
+    }
+
+    /**
+     * Returns a read-only copy of the tree laid out in contiguous arrays for cache friendly queries.
+     * @return Frozen copy of the tree
+     */
+    public FrozenKDTree freeze() {
+        lock.readLock().lock();
+        try {
+            return FrozenKDTree.freeze(this, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a read-only copy of the tree, stored outside of the garbage collected heap. The copy is made from this tree's
+     * KDNode graph, so the graph has to fit on heap first; FrozenKDTree.bulkLoad builds an off-heap tree straight from
+     * coordinate arrays instead.
+     * @return Frozen off-heap copy of the tree
+     */
+    public FrozenKDTree freezeOffHeap() {
+        lock.readLock().lock();
+        try {
+            return FrozenKDTree.freeze(this, true);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -441,18 +1171,23 @@ public class KDTree {
      * @param P Point to be insterted
      */
     private void innerInsert(KDNode V, Point2D P) {
-        if (V.getData().getDirection() == NodeData.Direction.Point) { // Closest point found
+        if (V.getData().isDeleted()) { // Closest point is a tombstone, reuse it's node
+            V.getData().setPointIntersecting(P);
+            V.getData().setDeleted(false);
+            tombstoneCount--;
+        } else if (V.getData().getDirection() == NodeData.Direction.Point) { // Closest point found
             Point2D backup = V.getData().getPoint();
             int currDepth = V.getData().getDepth();
-            int d = currDepth % 2;
+            int d = splitRule.chooseAxis(P.getX() <= backup.getX() ? Arrays.asList(P, backup) : Arrays.asList(backup, P),
+                    P.getY() <= backup.getY() ? Arrays.asList(P, backup) : Arrays.asList(backup, P), currDepth);
             NodeData.Direction currentDir = d == 0 ? NodeData.Direction.Vertical : NodeData.Direction.Horizontal;
             V.getData().setDirection(currentDir);
             boolean isVLeftChild;
 
-            if(V.equals(root)) {
+            if(V == root) {
                 isVLeftChild = true;
             } else {
-                isVLeftChild = V.getParent().getLeftChild().equals(V);
+                isVLeftChild = V.getParent().getLeftChild() == V;
             }
 
             if (currentDir == NodeData.Direction.Vertical) { // Line is vertical, compare with X coords
@@ -494,6 +1229,7 @@ public class KDTree {
                 innerInsert(V.getRightChild(), P);
             }
         }
+        updateAggregate(V); // Aggregates are corrected on the way back up
     }
 
     /**
@@ -501,18 +1237,36 @@ public class KDTree {
      * @param point Point to be inserted
      */
     public void insert(Point2D point) {
-        if(root == null) {
-            setRoot(createNode(null, null, new NodeData(NodeData.Direction.Point, point, 0)));
-            root.setParent(guard);
-        } else {
-            innerInsert(root, point);
+        insert(point, System.out);
+    }
+
+    /**
+     * Inserts a point to tree, reporting to given stream.
+     * @param point Point to be inserted
+     * @param out Output stream
+     */
+    public void insert(Point2D point, PrintStream out) {
+        long seq;
+        lock.writeLock().lock();
+        try {
+            if(root == null) {
+                setRoot(createNode(null, null, new NodeData(NodeData.Direction.Point, point, 0)));
+                root.setParent(guard);
+            } else {
+                innerInsert(root, point);
+            }
+            pointCount++;
+            seq = logMutation(MutationLog.INSERT, point);
+        } finally {
+            lock.writeLock().unlock();
         }
-        System.out.printf("\nInserted (%s, %s)\n", point.getX(), point.getY());
+        commitMutation(seq);
+        out.printf("\nInserted (%s, %s)\n", point.getX(), point.getY());
     }
 
     /**
-     * Searches the point in tree. If found, checks status of it's sibling. If sibling is a line, safely removes the parent & self, carries
-     * the sibling to parent's place, converts it to a line, and adds the points as left & right child to that line. Updates regions of new line node.
+     * Searches the point in tree. If found, checks status of it's sibling. If sibling is a line, safely removes the parent & self, and carries
+     * the sibling's subtree to parent's place. Updates depths and regions of the carried subtree.
      * If sibling is a point, just removes the parent line, and carries sibling point to parent's place.
      * @param V Current Node
      * @param P Point to be removed
@@ -520,51 +1274,44 @@ public class KDTree {
      */
     private boolean innerRemove(KDNode V, Point2D P) {
         if (V.getData().getDirection() == NodeData.Direction.Point) { // A point found
-            if (P.getX() != V.getData().getPoint().getX() && P.getY() != V.getData().getPoint().getY()) {
+            if (V.getData().isDeleted() || P.getX() != V.getData().getPoint().getX() || P.getY() != V.getData().getPoint().getY()) {
                 // Found point is not same with the one going to be removed
                 return false;
             } else { // Searching point is found
-                if(V.equals(root)) { // Removal of last point in tree
+                removedPoint = V.getData().getPoint();
+                if(V == root) { // Removal of last point in tree
                     setRoot(null);
                     return true;
                 }
 
-                boolean isVLeftChild = V.getParent().getLeftChild().equals(V);
+                boolean isVLeftChild = V.getParent().getLeftChild() == V;
                 KDNode transferNode;
 
                 if (isVLeftChild) { // is Left Child
                     transferNode = V.getParent().getRightChild(); // Node to be transferred one step up
-                    if (V.getParent().getRightChild().getData().getDirection() != NodeData.Direction.Point) {
-                        // Sibling is not a point, it's line direction will be changed
-                        transferNode.getData().setDirection(V.getParent().getData().getDirection());
-                        transferNode.getLeftChild().getData().depthDecrement(); // Decrease child's depths by one
-                        transferNode.getRightChild().getData().depthDecrement();
-                    } else {  // Sibling is a point
-                        if(V.getParent().equals(root)) { // Just 1 point will left after removal, set sibling as root
+                    if (V.getParent().getRightChild().getData().getDirection() == NodeData.Direction.Point) {  // Sibling is a point
+                        if(V.getParent() == root) { // Just 1 point will left after removal, set sibling as root
                             setRoot(V.getParent().getRightChild());
+                            root.getData().depthDecrement();
                             return true;
                         }
                     }
                 } else { // is Right Child
                     transferNode = V.getParent().getLeftChild(); // Node to be transferred one step up
-                    if (V.getParent().getLeftChild().getData().getDirection() != NodeData.Direction.Point) {
-                        // Sibling is not a point, it's line direction will be changed
-                        transferNode.getData().setDirection(V.getParent().getData().getDirection());
-                        transferNode.getLeftChild().getData().depthDecrement(); // Decrease child's depths by one
-                        transferNode.getRightChild().getData().depthDecrement();
-                    } else { // Sibling is a point
-                        if(V.getParent().equals(root)) { // Just 1 point will left after removal, set sibling as root
+                    if (V.getParent().getLeftChild().getData().getDirection() == NodeData.Direction.Point) { // Sibling is a point
+                        if(V.getParent() == root) { // Just 1 point will left after removal, set sibling as root
                             setRoot(V.getParent().getLeftChild());
+                            root.getData().depthDecrement();
                             return true;
                         }
                     }
                 }
 
-                transferNode.getData().depthDecrement(); // Decrease transferNode's depth by one
-                if(!V.getParent().getParent().equals(guard)) { //Safe removal
+                subtreeDepthDecrement(transferNode); // Whole subtree moves one step up
+                if(V.getParent().getParent() != guard) { //Safe removal
                     transferNode.setParent(V.getParent().getParent()); // Set it's new parent
                     // Set our transferNode as new parent's left or right Child
-                    if (V.getParent().getParent().getLeftChild().equals(V.getParent())) {
+                    if (V.getParent().getParent().getLeftChild() == V.getParent()) {
                         V.getParent().getParent().setLeftChild(transferNode);
                     } else {
                         V.getParent().getParent().setRightChild(transferNode);
@@ -574,10 +1321,11 @@ public class KDTree {
                     setRoot(transferNode);
                 }
 
-                // Set new regions of transferNode ( If node is converted into a line from point )
+                // Set new regions of transferNode and it's descendants, they are enlarged by parent's removal.
+                // Line keeps it's own axis, since it's children are split along it.
                 if(transferNode.getData().getDirection() != NodeData.Direction.Point) {
-                    boolean isTransferNodeLeftChild = transferNode.getParent().getLeftChild().equals(transferNode);
-                    int d = transferNode.getData().getDepth() % 2;
+                    boolean isTransferNodeLeftChild = transferNode.getParent().getLeftChild() == transferNode;
+                    int d = transferNode.getData().getAxis();
                     Point2D transferNodeP = transferNode.getData().getPoint();
                     if (isTransferNodeLeftChild) {
                         transferNode.getData().setLeftRegion(transferNode.getParent().getData().getLeftRegion().intersectToLeft(transferNodeP, d));
@@ -586,17 +1334,34 @@ public class KDTree {
                         transferNode.getData().setLeftRegion(transferNode.getParent().getData().getRightRegion().intersectToLeft(transferNodeP, d));
                         transferNode.getData().setRightRegion(transferNode.getParent().getData().getRightRegion().intersectToRight(transferNodeP, d));
                     }
+                    innerCalculateRegions(transferNode);
                 }
                 return true;
             }
         } else { // Continue searching
-            if (V.getData().getLeftRegion().contains(P)) {
-                return innerRemove(V.getLeftChild(), P);
-            } else if (V.getData().getRightRegion().contains(P)) {
-                return innerRemove(V.getRightChild(), P);
-            } else {
-                return false;
+            // A point on the line is in both regions, and can be on either side
+            boolean removed = V.getData().getLeftRegion().contains(P) && innerRemove(V.getLeftChild(), P);
+            if (!removed && V.getData().getRightRegion().contains(P)) {
+                removed = innerRemove(V.getRightChild(), P);
+            }
+            if (removed) { // Aggregates are corrected on the way back up, a detached parent line is harmlessly updated too
+                updateAggregate(V);
             }
+            return removed;
+        }
+    }
+
+    /**
+     * Decreases depths of all nodes in given subtree by one.
+     * @param nd Root of the subtree
+     */
+    private static void subtreeDepthDecrement(KDNode nd) {
+        nd.getData().depthDecrement();
+        if (nd.getLeftChild() != null) {
+            subtreeDepthDecrement(nd.getLeftChild());
+        }
+        if (nd.getRightChild() != null) {
+            subtreeDepthDecrement(nd.getRightChild());
         }
     }
 
@@ -605,10 +1370,221 @@ public class KDTree {
      * @param point Point to be removed
      */
     public void remove(Point2D point) {
-        if(innerRemove(root, point)) {
-            System.out.printf("\nRemoved (%s, %s)\n", point.getX(), point.getY());
+        remove(point, System.out);
+    }
+
+    /**
+     * Removes a point from tree if it exists, reporting to given stream.
+     * @param point Point to be removed
+     * @param out Output stream
+     */
+    public void remove(Point2D point, PrintStream out) {
+        boolean removed;
+        long seq = 0;
+        lock.writeLock().lock();
+        try {
+            if (root == null) {
+                removed = false;
+            } else if (lazyRemoval) {
+                removed = markRemoved(root, point);
+            } else {
+                removed = innerRemove(root, point);
+            }
+            if (removed) {
+                pointCount--;
+                seq = logMutation(MutationLog.REMOVE, removedPoint); // Logged with payload, so recovery drops the same copy
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commitMutation(seq);
+        if (removed) {
+            out.printf("\nRemoved (%s, %s)\n", point.getX(), point.getY());
+        } else {
+            out.printf("\nNot found (%s, %s)\n", point.getX(), point.getY());
+        }
+    }
+
+    /**
+     * Enables or disables lazy removal. In lazy mode, remove marks the point node as a tombstone in O(logn) without restructuring
+     * the tree, queries skip tombstones, and the tree is compacted in background once the tombstone ratio passes given threshold.
+     * Disabling lazy mode compacts the tree at once.
+     * @param enabled True for lazy removal
+     * @param threshold Ratio of tombstones to all point nodes that triggers a compaction
+     */
+    public void setLazyRemoval(boolean enabled, double threshold) {
+        lock.writeLock().lock();
+        try {
+            lazyRemoval = enabled;
+            compactionThreshold = threshold;
+            if (!enabled) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of points in tree
+     */
+    public int size() {
+        return pointCount;
+    }
+
+    /**
+     * @return Number of removed points whose nodes are still in the tree
+     */
+    public int getTombstoneCount() {
+        return tombstoneCount;
+    }
+
+    /**
+     * Traverses the tree like innerRemove, and marks the point node as a tombstone if point is found.
+     * @param V Current Node
+     * @param P Point to be removed
+     * @return True if point is found and marked, false otherwise
+     */
+    private boolean markRemoved(KDNode V, Point2D P) {
+        if (V.getData().getDirection() == NodeData.Direction.Point) { // A point found
+            NodeData dt = V.getData();
+            if (dt.isDeleted() || dt.getPoint().getX() != P.getX() || dt.getPoint().getY() != P.getY()) {
+                return false;
+            }
+            removedPoint = dt.getPoint();
+            dt.setDeleted(true);
+            updateAggregate(V);
+            tombstoneCount++;
+            if (!compactionScheduled && tombstoneCount > compactionThreshold * (pointCount - 1 + tombstoneCount)) {
+                scheduleCompaction();
+            }
+            return true;
+        }
+        // A point on the line is in both regions, and can be on either side
+        boolean removed = V.getData().getLeftRegion().contains(P) && markRemoved(V.getLeftChild(), P);
+        if (!removed && V.getData().getRightRegion().contains(P)) {
+            removed = markRemoved(V.getRightChild(), P);
+        }
+        if (removed) {
+            updateAggregate(V);
+        }
+        return removed;
+    }
+
+    /**
+     * Submits a compaction to background compaction thread.
+     */
+    private void scheduleCompaction() {
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "kdtree-compaction");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        compactionScheduled = true;
+        compactor.submit(this::compact);
+    }
+
+    /**
+     * Removes all tombstones from tree. Each maximal subtree whose tombstone ratio passes the threshold is bulk rebuilt from
+     * it's remaining points, other subtrees are kept as they are.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            compactionScheduled = false;
+            if (tombstoneCount > 0 && root != null) {
+                innerCompact(root, 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts point nodes and tombstones in given subtree.
+     * @param nd Root of the subtree
+     * @param counts Counts, {points, tombstones}
+     */
+    private static void countPoints(KDNode nd, int[] counts) {
+        if (nd.getData().getDirection() == NodeData.Direction.Point) {
+            counts[nd.getData().isDeleted() ? 1 : 0]++;
+            return;
+        }
+        countPoints(nd.getLeftChild(), counts);
+        countPoints(nd.getRightChild(), counts);
+    }
+
+    /**
+     * Rebuilds given subtree if it's tombstone ratio passes the threshold, otherwise continues with it's children.
+     * @param V Current Node
+     * @param dpth Current depth
+     */
+    private void innerCompact(KDNode V, int dpth) {
+        if (V.getData().getDirection() == NodeData.Direction.Point) { // Only reached for root
+            if (V.getData().isDeleted()) {
+                rebuildSubtree(V, dpth);
+            }
+            return;
+        }
+        int[] left = new int[2];
+        int[] right = new int[2];
+        countPoints(V.getLeftChild(), left);
+        countPoints(V.getRightChild(), right);
+        int tombstones = left[1] + right[1];
+        if (tombstones == 0) {
+            return;
+        }
+        // A child without any remaining points can't be rebuilt by itself, it's sibling must take this line's place
+        if (left[0] == 0 || right[0] == 0 || tombstones > compactionThreshold * (left[0] + right[0] + tombstones)) {
+            rebuildSubtree(V, dpth);
+            return;
+        }
+        innerCompact(V.getLeftChild(), dpth + 1);
+        innerCompact(V.getRightChild(), dpth + 1);
+    }
+
+    /**
+     * Replaces given subtree with a balanced one built from it's remaining points.
+     * @param V Root of the subtree, must have a remaining point unless it's the root of tree
+     * @param dpth Depth of V
+     */
+    private void rebuildSubtree(KDNode V, int dpth) {
+        List<Point2D> points = new ArrayList<>();
+        depthFirstCollect(V, points);
+        int[] counts = new int[2];
+        countPoints(V, counts);
+        tombstoneCount -= counts[1];
+        if (points.isEmpty()) { // Whole tree is removed
+            setRoot(null);
+            return;
+        }
+
+        List<Point2D> Py = new ArrayList<>(points);
+        points.sort(Comparator.comparingDouble(Point2D::getX));
+        Py.sort(Comparator.comparingDouble(Point2D::getY));
+        KDNode rebuilt = build(points, Py, dpth, splitRule);
+        if (V == root) {
+            setRoot(rebuilt);
+            if (rebuilt.getData().getDirection() != NodeData.Direction.Point) {
+                calculateRegions();
+            }
+            return;
+        }
+
+        KDNode parent = V.getParent();
+        boolean isLeftChild = parent.getLeftChild() == V;
+        RectangularHalfPlane area = isLeftChild ? parent.getData().getLeftRegion() : parent.getData().getRightRegion();
+        if (isLeftChild) {
+            parent.setLeftChild(rebuilt);
         } else {
-            System.out.printf("\nNot found (%s, %s)\n", point.getX(), point.getY());
+            parent.setRightChild(rebuilt);
+        }
+        if (rebuilt.getData().getDirection() != NodeData.Direction.Point) {
+            rebuilt.getData().setLeftRegion(area.intersectToLeft(rebuilt.getData().getPoint(), rebuilt.getData().getAxis()));
+            rebuilt.getData().setRightRegion(area.intersectToRight(rebuilt.getData().getPoint(), rebuilt.getData().getAxis()));
+            innerCalculateRegions(rebuilt);
         }
     }
 }
\ No newline at end of file
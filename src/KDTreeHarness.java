@@ -0,0 +1,689 @@
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Differential stress and load harness. Generates a workload with WorkloadGenerator, replays it against a tree mode, times
+ * each directive, and checks every result against a brute-force oracle (a plain list of points).
+ * Usage: java KDTreeHarness [-dataset uniform|clusters|lines|duplicates] [-points n] [-ops n] [-reads ratio] [-seed n]
+ * [-mode eager|lazy|logarithmic|frozen|offheap|quantized] [-rule Alternating|MaxSpread|MaxVariance] [-nocheck]
+ * [-write points.txt directives.txt]
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class KDTreeHarness {
+    private static final int MAX_REPORTED = 10; // Number of mismatches printed in detail
+
+    /**
+     * Directive kinds, for per kind latency reporting. A nearest directive with epsilon or visit budget is approximate.
+     */
+    private enum Op {
+        insert, remove, search, nearest, approximate, knn, range, aggregate, histogram, join, findmin, findmax
+    }
+
+    /**
+     * A tree mode under test. Each mode declares the directive kinds it supports; other directives are skipped before
+     * they are dispatched, and a declared kind without an implementation is reported as a mismatch.
+     */
+    private static abstract class Target {
+        private final Set<Op> supported;
+
+        Target(Set<Op> supported) {
+            this.supported = supported;
+        }
+
+        boolean supports(Op op) {
+            return supported.contains(op);
+        }
+
+        private UnsupportedOperationException undeclared(Op op) {
+            return new UnsupportedOperationException(op + " is declared but not implemented by " + getClass().getSimpleName());
+        }
+
+        void insert(Point2D p) {
+            throw undeclared(Op.insert);
+        }
+
+        boolean remove(Point2D p) {
+            throw undeclared(Op.remove);
+        }
+
+        boolean search(Point2D p) {
+            throw undeclared(Op.search);
+        }
+
+        double nearest(Point2D p) {
+            throw undeclared(Op.nearest);
+        }
+
+        NearestResult approximate(Point2D p, double epsilon, int maxVisits) {
+            throw undeclared(Op.approximate);
+        }
+
+        double[] knn(Point2D p, int k) {
+            throw undeclared(Op.knn);
+        }
+
+        List<Point2D> range(Point2D llc, Point2D urc) {
+            throw undeclared(Op.range);
+        }
+
+        Aggregate aggregate(Point2D llc, Point2D urc) {
+            throw undeclared(Op.aggregate);
+        }
+
+        int[][] histogram(Point2D llc, Point2D urc, int columns, int rows) {
+            throw undeclared(Op.histogram);
+        }
+
+        long join(double distance) {
+            throw undeclared(Op.join);
+        }
+
+        Point2D findMin(int d) {
+            throw undeclared(Op.findmin);
+        }
+
+        Point2D findMax(int d) {
+            throw undeclared(Op.findmax);
+        }
+
+        abstract int size();
+    }
+
+    /**
+     * Dynamic KDTree, with eager or lazy removal.
+     */
+    private static class TreeTarget extends Target {
+        private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        private final KDTree tree;
+
+        private TreeTarget(KDTree tree) {
+            super(EnumSet.allOf(Op.class));
+            this.tree = tree;
+        }
+
+        void insert(Point2D p) {
+            tree.insert(p, DISCARD);
+        }
+
+        boolean remove(Point2D p) {
+            int before = tree.size();
+            tree.remove(p, DISCARD);
+            return tree.size() < before;
+        }
+
+        boolean search(Point2D p) {
+            return tree.search(p) != null;
+        }
+
+        double nearest(Point2D p) {
+            NearestResult r = tree.nearest(p);
+            return r == null ? Double.NaN : r.getDistance();
+        }
+
+        NearestResult approximate(Point2D p, double epsilon, int maxVisits) {
+            return tree.nearest(p, epsilon, maxVisits);
+        }
+
+        double[] knn(Point2D p, int k) {
+            double[] found = new double[k];
+            int n = 0;
+            for (Iterator<NearestResult> it = tree.nearestIterator(p); n < k && it.hasNext(); ) {
+                found[n++] = it.next().getDistance();
+            }
+            return Arrays.copyOf(found, n);
+        }
+
+        List<Point2D> range(Point2D llc, Point2D urc) {
+            return tree.rangeStream(llc, urc, false).collect(Collectors.toList());
+        }
+
+        Aggregate aggregate(Point2D llc, Point2D urc) {
+            return tree.rangeAggregate(llc, urc);
+        }
+
+        int[][] histogram(Point2D llc, Point2D urc, int columns, int rows) {
+            return tree.histogram(llc, urc, columns, rows);
+        }
+
+        long join(double distance) {
+            long[] pairs = new long[1];
+            tree.join(tree, distance, (p, q) -> pairs[0]++);
+            return pairs[0];
+        }
+
+        Point2D findMin(int d) {
+            return tree.findMin(d);
+        }
+
+        Point2D findMax(int d) {
+            return tree.findMax(d);
+        }
+
+        int size() {
+            return tree.size();
+        }
+    }
+
+    /**
+     * Insert optimized LogarithmicKDTree.
+     */
+    private static class LogarithmicTarget extends Target {
+        private final LogarithmicKDTree tree = new LogarithmicKDTree();
+
+        private LogarithmicTarget() {
+            super(EnumSet.of(Op.insert, Op.remove, Op.search, Op.range));
+        }
+
+        void insert(Point2D p) {
+            tree.insert(p);
+        }
+
+        boolean remove(Point2D p) {
+            return tree.remove(p);
+        }
+
+        boolean search(Point2D p) {
+            return tree.search(p);
+        }
+
+        List<Point2D> range(Point2D llc, Point2D urc) {
+            return tree.range(llc, urc);
+        }
+
+        int size() {
+            return tree.size();
+        }
+    }
+
+    /**
+     * Read-only FrozenKDTree, with heap or off-heap node storage, or QuantizedKDTree, built once from initial points.
+     */
+    private static class FrozenTarget extends Target {
+        private final FrozenKDTree frozen;
+        private final QuantizedKDTree quantized;
+
+        /**
+         * Constructor.
+         * @param points Initial points
+         * @param mode frozen, offheap or quantized
+         */
+        private FrozenTarget(List<Point2D> points, String mode) {
+            super(EnumSet.of(Op.search, Op.range));
+            KDTree tree = KDTree.buildKDTree(points);
+            this.frozen = mode.equals("quantized") ? null : mode.equals("offheap") ? tree.freezeOffHeap() : tree.freeze();
+            this.quantized = mode.equals("quantized") ? new QuantizedKDTree(tree.freeze()) : null;
+        }
+
+        boolean search(Point2D p) {
+            return frozen != null ? frozen.search(p) : quantized.search(p);
+        }
+
+        List<Point2D> range(Point2D llc, Point2D urc) {
+            return frozen != null ? frozen.range(llc, urc) : quantized.range(llc, urc);
+        }
+
+        int size() {
+            return frozen != null ? frozen.size() : quantized.size();
+        }
+    }
+
+    /**
+     * Brute-force oracle, a multiset of points in a list.
+     */
+    private static class Oracle {
+        private final List<Point2D> points;
+
+        private Oracle(List<Point2D> initial) {
+            this.points = new ArrayList<>(initial);
+        }
+
+        private boolean remove(Point2D p) {
+            for (int i = 0; i < points.size(); i++) {
+                if (points.get(i).getX() == p.getX() && points.get(i).getY() == p.getY()) {
+                    points.set(i, points.get(points.size() - 1));
+                    points.remove(points.size() - 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean search(Point2D p) {
+            for (Point2D q : points) {
+                if (q.getX() == p.getX() && q.getY() == p.getY()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private double nearest(Point2D p) {
+            double best = Double.POSITIVE_INFINITY;
+            for (Point2D q : points) {
+                best = Math.min(best, q.distanceSq(p));
+            }
+            return points.isEmpty() ? Double.NaN : Math.sqrt(best);
+        }
+
+        private double[] knn(Point2D p, int k) {
+            double[] distances = new double[points.size()];
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = Math.sqrt(points.get(i).distanceSq(p));
+            }
+            Arrays.sort(distances);
+            return Arrays.copyOf(distances, Math.min(k, distances.length));
+        }
+
+        private List<Point2D> range(Point2D llc, Point2D urc) {
+            List<Point2D> found = new ArrayList<>();
+            for (Point2D q : points) {
+                if (q.getX() >= llc.getX() && q.getX() <= urc.getX() && q.getY() >= llc.getY() && q.getY() <= urc.getY()) {
+                    found.add(q);
+                }
+            }
+            return found;
+        }
+
+        private Aggregate aggregate(Point2D llc, Point2D urc) {
+            Aggregate a = new Aggregate();
+            for (Point2D q : range(llc, urc)) {
+                a.add(WeightedPoint.weightOf(q));
+            }
+            return a;
+        }
+
+        /**
+         * Counts points into cells the same way as KDTree.histogram: cell index is cut down to the last cell, so points on
+         * the rectangle's upper border fall into the last row or column.
+         */
+        private int[][] histogram(Point2D llc, Point2D urc, int columns, int rows) {
+            int[][] counts = new int[columns][rows];
+            double cellWidth = (urc.getX() - llc.getX()) / columns, cellHeight = (urc.getY() - llc.getY()) / rows;
+            for (Point2D q : range(llc, urc)) {
+                counts[Math.min(columns - 1, (int) ((q.getX() - llc.getX()) / cellWidth))]
+                        [Math.min(rows - 1, (int) ((q.getY() - llc.getY()) / cellHeight))]++;
+            }
+            return counts;
+        }
+
+        /**
+         * Counts ordered pairs within distance, each point paired with itself included, like a self join.
+         */
+        private long join(double distance) {
+            long pairs = 0;
+            for (Point2D p : points) {
+                for (Point2D q : points) {
+                    if (p.distanceSq(q) <= distance * distance) {
+                        pairs++;
+                    }
+                }
+            }
+            return pairs;
+        }
+
+        private double extreme(int d, boolean max) {
+            double v = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            for (Point2D q : points) {
+                double c = d == 0 ? q.getX() : q.getY();
+                v = max ? Math.max(v, c) : Math.min(v, c);
+            }
+            return v;
+        }
+    }
+
+    private static final Comparator<Point2D> BY_COORDS = Comparator.comparingDouble(Point2D::getX).thenComparingDouble(Point2D::getY);
+
+    private final Target target;
+    private final Oracle oracle; // null if results are not checked
+    private final Map<Op, LatencyRecorder> latencies = new EnumMap<>(Op.class);
+    private long busyNanos;
+    private int skipped;
+    private int mismatches;
+
+    private KDTreeHarness(Target target, Oracle oracle) {
+        this.target = target;
+        this.oracle = oracle;
+    }
+
+    /**
+     * Reports a wrong result.
+     * @param line Directive line
+     * @param expected Oracle's result
+     * @param actual Target's result
+     */
+    private void mismatch(String line, Object expected, Object actual) {
+        if (++mismatches <= MAX_REPORTED) {
+            System.out.printf("MISMATCH at '%s': expected %s, got %s%n", line, expected, actual);
+        }
+    }
+
+    private void record(Op op, long start) {
+        long elapsed = System.nanoTime() - start;
+        busyNanos += elapsed;
+        latencies.computeIfAbsent(op, o -> new LatencyRecorder()).record(elapsed);
+    }
+
+    /**
+     * Runs a single directive on target, and checks it's result against oracle.
+     * @param line Directive line
+     */
+    private void run(String line) {
+        String[] args = line.trim().split("\\s+");
+        String directive = args[0].replace("-", "").toLowerCase();
+        double[] v = new double[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            v[i - 1] = Double.parseDouble(args[i]);
+        }
+        Op op;
+        switch (directive) {
+            case "findminx":
+            case "findminy":
+                op = Op.findmin;
+                break;
+            case "findmaxx":
+            case "findmaxy":
+                op = Op.findmax;
+                break;
+            case "nearest":
+                op = v.length > 2 ? Op.approximate : Op.nearest;
+                break;
+            default:
+                op = Op.valueOf(directive);
+        }
+        if (!target.supports(op)) {
+            skipped++;
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            switch (directive) {
+                case "insert": {
+                    Point2D p = args.length == 5 ? new WeightedPoint(v[0], v[1], (long) v[2], v[3]) : new Point2D.Double(v[0], v[1]);
+                    target.insert(p);
+                    record(Op.insert, start);
+                    if (oracle != null) {
+                        oracle.points.add(p);
+                    }
+                    break;
+                }
+                case "remove": {
+                    Point2D p = new Point2D.Double(v[0], v[1]);
+                    boolean actual = target.remove(p);
+                    record(Op.remove, start);
+                    if (oracle != null) {
+                        boolean expected = oracle.remove(p);
+                        if (expected != actual) {
+                            mismatch(line, expected ? "removed" : "not found", actual ? "removed" : "not found");
+                        }
+                    }
+                    break;
+                }
+                case "search": {
+                    Point2D p = new Point2D.Double(v[0], v[1]);
+                    boolean actual = target.search(p);
+                    record(Op.search, start);
+                    if (oracle != null && oracle.search(p) != actual) {
+                        mismatch(line, !actual, actual);
+                    }
+                    break;
+                }
+                case "nearest": {
+                    Point2D p = new Point2D.Double(v[0], v[1]);
+                    if (op == Op.approximate) {
+                        checkApproximate(line, p, v[2], v.length > 3 ? (int) v[3] : Integer.MAX_VALUE, start);
+                        break;
+                    }
+                    double actual = target.nearest(p);
+                    record(Op.nearest, start);
+                    if (oracle != null) {
+                        double expected = oracle.nearest(p);
+                        if (!(expected == actual || Double.isNaN(expected) && Double.isNaN(actual))) {
+                            mismatch(line, "distance " + expected, "distance " + actual);
+                        }
+                    }
+                    break;
+                }
+                case "knn": {
+                    Point2D p = new Point2D.Double(v[0], v[1]);
+                    double[] actual = target.knn(p, (int) v[2]);
+                    record(Op.knn, start);
+                    if (oracle != null) {
+                        double[] expected = oracle.knn(p, (int) v[2]);
+                        if (!Arrays.equals(expected, actual)) {
+                            mismatch(line, Arrays.toString(expected), Arrays.toString(actual));
+                        }
+                    }
+                    break;
+                }
+                case "range": {
+                    Point2D llc = new Point2D.Double(v[0], v[1]), urc = new Point2D.Double(v[2], v[3]);
+                    List<Point2D> actual = target.range(llc, urc);
+                    record(Op.range, start);
+                    if (oracle != null) {
+                        List<Point2D> expected = oracle.range(llc, urc);
+                        actual = new ArrayList<>(actual);
+                        actual.sort(BY_COORDS);
+                        expected.sort(BY_COORDS);
+                        if (!expected.equals(actual)) { // Point2D equality is by coords
+                            mismatch(line, expected.size() + " points", actual.size() + " points");
+                        }
+                    }
+                    break;
+                }
+                case "aggregate": {
+                    Point2D llc = new Point2D.Double(v[0], v[1]), urc = new Point2D.Double(v[2], v[3]);
+                    Aggregate actual = target.aggregate(llc, urc);
+                    record(Op.aggregate, start);
+                    if (oracle != null) {
+                        Aggregate expected = oracle.aggregate(llc, urc);
+                        if (!expected.toString().equals(actual.toString())) {
+                            mismatch(line, expected, actual);
+                        }
+                    }
+                    break;
+                }
+                case "histogram": {
+                    Point2D llc = new Point2D.Double(v[0], v[1]), urc = new Point2D.Double(v[2], v[3]);
+                    int[][] actual = target.histogram(llc, urc, (int) v[4], (int) v[5]);
+                    record(Op.histogram, start);
+                    if (oracle != null) {
+                        int[][] expected = oracle.histogram(llc, urc, (int) v[4], (int) v[5]);
+                        if (!Arrays.deepEquals(expected, actual)) {
+                            mismatch(line, Arrays.deepToString(expected), Arrays.deepToString(actual));
+                        }
+                    }
+                    break;
+                }
+                case "join": {
+                    long actual = target.join(v[0]);
+                    record(Op.join, start);
+                    if (oracle != null) {
+                        long expected = oracle.join(v[0]);
+                        if (expected != actual) {
+                            mismatch(line, expected + " pairs", actual + " pairs");
+                        }
+                    }
+                    break;
+                }
+                case "findminx":
+                case "findminy":
+                case "findmaxx":
+                case "findmaxy": {
+                    int d = directive.endsWith("x") ? 0 : 1;
+                    boolean max = directive.startsWith("findmax");
+                    Point2D actual = max ? target.findMax(d) : target.findMin(d);
+                    record(max ? Op.findmax : Op.findmin, start);
+                    if (oracle != null && !oracle.points.isEmpty()) {
+                        double expected = oracle.extreme(d, max);
+                        double got = d == 0 ? actual.getX() : actual.getY();
+                        if (expected != got) {
+                            mismatch(line, expected, got);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) { // A crash is a mismatch too, keep going with the rest of the stream
+            mismatch(line, "no exception", e);
+        }
+    }
+
+    /**
+     * Runs an approximate nearest neighbour query and checks it's guarantees: found point is in the tree, it's exactly
+     * the nearest one if the result says so, and within (1+epsilon) times the nearest distance unless the visit budget cut
+     * the search.
+     * @param line Directive line
+     * @param p Query point
+     * @param epsilon Allowed relative error
+     * @param maxVisits Visit budget
+     * @param start Start time of the directive
+     */
+    private void checkApproximate(String line, Point2D p, double epsilon, int maxVisits, long start) {
+        NearestResult actual = target.approximate(p, epsilon, maxVisits);
+        record(Op.approximate, start);
+        if (oracle == null) {
+            return;
+        }
+        double expected = oracle.nearest(p);
+        if (actual == null || Double.isNaN(expected)) {
+            if (actual != null || !Double.isNaN(expected)) {
+                mismatch(line, "distance " + expected, actual);
+            }
+        } else if (!oracle.search(actual.getPoint()) || actual.getPoint().distance(p) != actual.getDistance()) {
+            mismatch(line, "a point of the tree", actual);
+        } else if (actual.isExact() ? actual.getDistance() != expected
+                : maxVisits == Integer.MAX_VALUE && actual.getDistance() > (1 + epsilon) * expected * (1 + 1e-12)) {
+            mismatch(line, "distance " + expected + " within epsilon " + epsilon, actual);
+        }
+    }
+
+    /**
+     * Compares final contents of target with oracle.
+     */
+    private void checkFinalState() {
+        if (target.size() != oracle.points.size()) {
+            mismatch("final size", oracle.points.size(), target.size());
+        }
+        if (target instanceof TreeTarget) {
+            List<Point2D> actual = ((TreeTarget) target).tree.getPoints();
+            List<Point2D> expected = new ArrayList<>(oracle.points);
+            actual.sort(BY_COORDS);
+            expected.sort(BY_COORDS);
+            if (!expected.equals(actual)) {
+                mismatch("final points", expected.size() + " points", actual.size() + " points");
+            }
+        }
+    }
+
+    private void report(PrintStream out, long wallNanos) {
+        LatencyRecorder all = new LatencyRecorder();
+        for (Map.Entry<Op, LatencyRecorder> e : latencies.entrySet()) {
+            e.getValue().print(e.getKey().toString(), e.getValue().total(), out);
+            all.merge(e.getValue());
+        }
+        all.print("all", busyNanos, out);
+        out.printf("wall time %.2f s, %d directives skipped (unsupported by mode)%n", wallNanos / 1e9, skipped);
+        if (oracle != null) {
+            out.printf("%d mismatches%n", mismatches);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGenerator.Dataset dataset = WorkloadGenerator.Dataset.uniform;
+        int points = 20000, ops = 50000;
+        double reads = 0.8;
+        long seed = 1;
+        String mode = "eager";
+        KDTree.SplitRule rule = KDTree.SplitRule.Alternating;
+        boolean check = true;
+        String pointsFile = null, directivesFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-dataset": dataset = WorkloadGenerator.Dataset.valueOf(args[++i]); break;
+                case "-points": points = Integer.parseInt(args[++i]); break;
+                case "-ops": ops = Integer.parseInt(args[++i]); break;
+                case "-reads": reads = Double.parseDouble(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                case "-mode": mode = args[++i]; break;
+                case "-rule": rule = KDTree.SplitRule.valueOf(args[++i]); break;
+                case "-nocheck": check = false; break;
+                case "-write": pointsFile = args[++i]; directivesFile = args[++i]; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        WorkloadGenerator generator = new WorkloadGenerator(dataset, seed);
+        List<Point2D> initial = generator.points(points);
+        List<String> directives = generator.directives(initial, ops, reads);
+        if (pointsFile != null) {
+            WorkloadGenerator.write(initial, directives, pointsFile, directivesFile);
+        }
+
+        long buildStart = System.nanoTime();
+        Target target;
+        switch (mode) {
+            case "eager":
+            case "lazy": {
+                KDTree tree = KDTree.buildKDTree(initial, rule);
+                if (mode.equals("lazy")) {
+                    tree.setLazyRemoval(true, 0.25);
+                }
+                target = new TreeTarget(tree);
+                break;
+            }
+            case "logarithmic": {
+                LogarithmicTarget t = new LogarithmicTarget();
+                for (Point2D p : initial) {
+                    t.insert(p);
+                }
+                target = t;
+                break;
+            }
+            case "frozen":
+            case "offheap":
+            case "quantized":
+                target = new FrozenTarget(initial, mode);
+                break;
+            default:
+                System.err.println("Unknown mode " + mode);
+                System.exit(1);
+                return;
+        }
+        System.out.printf("%s dataset, %d points, %d directives (%.0f%% reads), %s mode, built in %.2f s%n", dataset, points,
+                ops, reads * 100, mode, (System.nanoTime() - buildStart) / 1e9);
+
+        KDTreeHarness harness = new KDTreeHarness(target, check ? new Oracle(initial) : null);
+        long start = System.nanoTime();
+        for (String line : directives) {
+            harness.run(line);
+        }
+        long wall = System.nanoTime() - start;
+        if (check) {
+            harness.checkFinalState();
+        }
+        harness.report(System.out, wall);
+        System.exit(harness.mismatches == 0 ? 0 : 1);
+    }
+}
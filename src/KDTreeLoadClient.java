@@ -0,0 +1,119 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Load generator for KDTreeServer. Opens given number of connections, and on each one keeps up to given number of requests in
+ * flight, cycling through the directives of a directives file. Reports throughput and latency percentiles of all requests.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class KDTreeLoadClient {
+
+    /**
+     * Sends requests over a single connection until given deadline.
+     * @param port Server port on loopback address
+     * @param directives Directives to be sent, in a cycle
+     * @param offset Index of the first directive, so connections don't run in lockstep
+     * @param depth Maximum number of requests in flight
+     * @param deadline End of the run, in System.nanoTime
+     * @return Latencies of answered requests
+     * @throws IOException If the connection fails
+     */
+    private static LatencyRecorder run(int port, List<String> directives, int offset, int depth, long deadline) throws IOException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Deque<Long> inFlight = new ArrayDeque<>(); // Send times of unanswered requests, oldest first
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            int next = offset;
+            while (System.nanoTime() < deadline || !inFlight.isEmpty()) {
+                if (System.nanoTime() < deadline) {
+                    while (inFlight.size() < depth) {
+                        out.write(directives.get(next));
+                        out.write('\n');
+                        inFlight.addLast(System.nanoTime());
+                        next = (next + 1) % directives.size();
+                    }
+                    out.flush();
+                }
+                // Wait for the oldest request's response
+                String line;
+                while ((line = in.readLine()) != null && !line.equals(KDTreeServer.END_OF_RESPONSE)) {
+                    // Response body is not checked
+                }
+                if (line == null) {
+                    throw new IOException("Connection closed by server");
+                }
+                recorder.record(System.nanoTime() - inFlight.removeFirst());
+            }
+        }
+        return recorder;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java KDTreeLoadClient directives.txt [port] [connections] [pipeline depth] [seconds]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : KDTreeServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        double seconds = args.length > 4 ? Double.parseDouble(args[4]) : 10;
+
+        List<String> directives = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(Paths.get(args[0]))) {
+            // quit would close the connection, so it's left out
+            directives = br.lines().map(String::trim).filter(l -> !l.isEmpty() && !l.equalsIgnoreCase("quit"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        if (directives.isEmpty()) {
+            System.err.println("No directives to send");
+            System.exit(1);
+        }
+
+        final List<String> requests = directives;
+        final LatencyRecorder total = new LatencyRecorder();
+        final long start = System.nanoTime();
+        final long deadline = start + (long) (seconds * 1e9);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            final int offset = (int) ((long) c * requests.size() / connections);
+            Thread t = new Thread(() -> {
+                try {
+                    LatencyRecorder r = run(port, requests, offset, depth, deadline);
+                    synchronized (total) {
+                        total.merge(r);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        total.print(String.format("%d connections, pipeline depth %d", connections, depth), elapsed, System.out);
+    }
+}
@@ -1,10 +1,19 @@
 import java.awt.geom.Point2D;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -19,107 +28,250 @@ public class KDTreeQuery {
     private static KDTree tree;
 
     private enum Directive {
-        insert, remove, search, findminx, findminy, findmaxx, findmaxy, displaytree, displaypoints, range, quit;
+        insert, remove, search, nearest, knn, aggregate, histogram, join, findminx, findminy, findmaxx, findmaxy, displaytree, displaypoints, range, quit;
 
-        static Directive safeValueOf(final String s) {
+        static Directive safeValueOf(final String s, PrintStream err) {
             try {
                 return Directive.valueOf(s);
             } catch (final IllegalArgumentException e) {
-                System.err.println("\nInvalid directive");
+                err.println("\nInvalid directive");
                 return quit;
             }
         }
 
-        void process(String[] args) {
+        /**
+         * @return True if directive doesn't modify the tree or end the directives, so it can run in parallel with other reads
+         */
+        boolean isReadOnly() {
+            return this != insert && this != remove && this != quit;
+        }
+
+        /**
+         * Runs the directive on given tree.
+         * @param tree Tree to be queried
+         * @param args Directive and it's parameters
+         * @param out Stream for results
+         * @param err Stream for errors
+         * @return False if directives should end
+         */
+        boolean process(KDTree tree, String[] args, PrintStream out, PrintStream err) {
             switch (this) {
                 case insert: {
                     double x, y;
-                    if (args.length != 3) {
-                        System.err.println("\nInvalid parameter for insert directive");
-                        return;
+                    if (args.length != 3 && args.length != 5) {
+                        err.println("\nInvalid parameter for insert directive");
+                        return true;
                     }
+                    Point2D p;
                     try {
                         x = Double.parseDouble(args[1]);
                         y = Double.parseDouble(args[2]);
+                        if (args.length == 5) { // Point with a payload
+                            p = new WeightedPoint(x, y, Long.parseLong(args[3]), Double.parseDouble(args[4]));
+                        } else {
+                            p = new Point2D.Double(x, y);
+                        }
                     } catch (NumberFormatException e) {
-                        System.err.println("\nOne of given parameter for insert directive is NaN");
-                        return;
+                        err.println("\nOne of given parameter for insert directive is NaN");
+                        return true;
                     }
 
-                    tree.insert(new Point2D.Double(x, y));
+                    tree.insert(p, out);
                     break;
                 }
                 case remove: {
                     double x, y;
                     if (args.length != 3) {
-                        System.err.println("\nInvalid parameter for remove directive");
-                        return;
+                        err.println("\nInvalid parameter for remove directive");
+                        return true;
                     }
                     try {
                         x = Double.parseDouble(args[1]);
                         y = Double.parseDouble(args[2]);
                     } catch (NumberFormatException e) {
-                        System.err.println("\nOne of given parameter for remove directive is NaN");
-                        return;
+                        err.println("\nOne of given parameter for remove directive is NaN");
+                        return true;
                     }
 
-                    tree.remove(new Point2D.Double(x, y));
+                    tree.remove(new Point2D.Double(x, y), out);
                     break;
                 }
                 case search: {
                     double x, y;
                     if (args.length != 3) {
-                        System.err.println("\nInvalid parameter for search directive");
-                        return;
+                        err.println("\nInvalid parameter for search directive");
+                        return true;
                     }
                     try {
                         x = Double.parseDouble(args[1]);
                         y = Double.parseDouble(args[2]);
                     } catch (NumberFormatException e) {
-                        System.err.println("\nOne of given parameter for search directive is NaN");
-                        return;
+                        err.println("\nOne of given parameter for search directive is NaN");
+                        return true;
                     }
 
                     if(tree.search(new Point2D.Double(x, y)) == null) {
-                        System.out.printf("\nNot Found (%s, %s)\n", x, y);
+                        out.printf("\nNot Found (%s, %s)\n", x, y);
+                    } else {
+                        out.printf("\nFound (%s, %s)\n", x, y);
+                    }
+                    break;
+                }
+                case nearest: {
+                    double x, y, epsilon = 0;
+                    int maxVisits = Integer.MAX_VALUE;
+                    if (args.length < 3 || args.length > 5) {
+                        err.println("\nInvalid parameter for nearest directive");
+                        return true;
+                    }
+                    try {
+                        x = Double.parseDouble(args[1]);
+                        y = Double.parseDouble(args[2]);
+                        if (args.length > 3) {
+                            epsilon = Double.parseDouble(args[3]);
+                        }
+                        if (args.length > 4) {
+                            maxVisits = Integer.parseInt(args[4]);
+                        }
+                    } catch (NumberFormatException e) {
+                        err.println("\nOne of given parameter for nearest directive is NaN");
+                        return true;
+                    }
+
+                    NearestResult r = tree.nearest(new Point2D.Double(x, y), epsilon, maxVisits);
+                    if (r == null) {
+                        out.printf("\nNo points near (%s, %s)\n", x, y);
                     } else {
-                        System.out.printf("\nFound (%s, %s)\n", x, y);
+                        out.printf("\nNearest to (%s, %s): %s\n", x, y, r);
+                    }
+                    break;
+                }
+                case knn: {
+                    double x, y;
+                    int k;
+                    if (args.length != 4) {
+                        err.println("\nInvalid parameter for knn directive");
+                        return true;
+                    }
+                    try {
+                        x = Double.parseDouble(args[1]);
+                        y = Double.parseDouble(args[2]);
+                        k = Integer.parseInt(args[3]);
+                    } catch (NumberFormatException e) {
+                        err.println("\nOne of given parameter for knn directive is NaN");
+                        return true;
+                    }
+
+                    out.printf("\n%d nearest to (%s, %s):\n", k, x, y);
+                    Iterator<NearestResult> it = tree.nearestIterator(new Point2D.Double(x, y));
+                    for (int i = 0; i < k && it.hasNext(); i++) {
+                        out.println(it.next());
+                    }
+                    break;
+                }
+                case aggregate: {
+                    double llx, lly, urx, ury;
+                    if (args.length != 5) {
+                        err.println("\nInvalid parameter for aggregate directive");
+                        return true;
+                    }
+                    try {
+                        llx = Double.parseDouble(args[1]);
+                        lly = Double.parseDouble(args[2]);
+                        urx = Double.parseDouble(args[3]);
+                        ury = Double.parseDouble(args[4]);
+                    } catch (NumberFormatException e) {
+                        err.println("\nOne of given parameter for aggregate directive is NaN");
+                        return true;
+                    }
+                    out.printf("\nAggregate of points in given range (%s<=x<=%s, %s<=y<=%s): %s\n", llx, urx, lly, ury,
+                            tree.rangeAggregate(new Point2D.Double(llx, lly), new Point2D.Double(urx, ury)));
+                    break;
+                }
+                case histogram: {
+                    double llx, lly, urx, ury;
+                    int columns, rows;
+                    if (args.length != 7) {
+                        err.println("\nInvalid parameter for histogram directive");
+                        return true;
+                    }
+                    try {
+                        llx = Double.parseDouble(args[1]);
+                        lly = Double.parseDouble(args[2]);
+                        urx = Double.parseDouble(args[3]);
+                        ury = Double.parseDouble(args[4]);
+                        columns = Integer.parseInt(args[5]);
+                        rows = Integer.parseInt(args[6]);
+                    } catch (NumberFormatException e) {
+                        err.println("\nOne of given parameter for histogram directive is NaN");
+                        return true;
+                    }
+                    if (columns <= 0 || rows <= 0) {
+                        err.println("\nInvalid grid size for histogram directive");
+                        return true;
+                    }
+                    int[][] counts = tree.histogram(new Point2D.Double(llx, lly), new Point2D.Double(urx, ury), columns, rows);
+                    out.printf("\nPoint counts in %dx%d grid over (%s<=x<=%s, %s<=y<=%s), top row first:\n", columns, rows,
+                            llx, urx, lly, ury);
+                    for (int r = rows - 1; r >= 0; r--) {
+                        StringBuilder line = new StringBuilder();
+                        for (int c = 0; c < columns; c++) {
+                            line.append(c == 0 ? "" : " ").append(counts[c][r]);
+                        }
+                        out.println(line);
+                    }
+                    break;
+                }
+                case join: {
+                    double distance;
+                    if (args.length != 2) {
+                        err.println("\nInvalid parameter for join directive");
+                        return true;
                     }
+                    try {
+                        distance = Double.parseDouble(args[1]);
+                    } catch (NumberFormatException e) {
+                        err.println("\nOne of given parameter for join directive is NaN");
+                        return true;
+                    }
+                    long[] pairs = new long[1];
+                    tree.join(tree, distance, (p, q) -> pairs[0]++);
+                    out.printf("\nPairs of points within distance %s: %d\n", distance, pairs[0]);
                     break;
                 }
                 case findminx: {
                     Point2D p = tree.findMin(0);
-                    System.out.printf("\nMinimum X-Coord Point: (%s, %s)\n", p.getX(), p.getY());
+                    out.printf("\nMinimum X-Coord Point: (%s, %s)\n", p.getX(), p.getY());
                     break;
                 }
                 case findminy: {
                     Point2D p = tree.findMin(1);
-                    System.out.printf("\nMinimum Y-Coord Point: (%s, %s)\n", p.getX(), p.getY());
+                    out.printf("\nMinimum Y-Coord Point: (%s, %s)\n", p.getX(), p.getY());
                     break;
                 }
                 case findmaxx: {
                     Point2D p = tree.findMax(0);
-                    System.out.printf("\nMaximum X-Coord Point: (%s, %s)\n", p.getX(), p.getY());
+                    out.printf("\nMaximum X-Coord Point: (%s, %s)\n", p.getX(), p.getY());
                     break;
                 }
                 case findmaxy: {
                     Point2D p = tree.findMax(1);
-                    System.out.printf("\nMaximum Y-Coord Point: (%s, %s)\n", p.getX(), p.getY());
+                    out.printf("\nMaximum Y-Coord Point: (%s, %s)\n", p.getX(), p.getY());
                     break;
                 }
                 case displaytree:
-                    System.out.println("\nDisplaying tree:");
-                    tree.displayTree();
+                    out.println("\nDisplaying tree:");
+                    tree.displayTree(out);
                     break;
                 case displaypoints:
-                    System.out.println("\nDisplaying all points of tree:");
-                    tree.displayPoints();
+                    out.println("\nDisplaying all points of tree:");
+                    tree.displayPoints(out);
                     break;
                 case range: {
                     double llx, lly, urx, ury;
                     if (args.length != 5) {
-                        System.err.println("\nInvalid parameter for range directive");
-                        return;
+                        err.println("\nInvalid parameter for range directive");
+                        return true;
                     }
                     try {
                         llx = Double.parseDouble(args[1]);
@@ -127,21 +279,168 @@ public class KDTreeQuery {
                         urx = Double.parseDouble(args[3]);
                         ury = Double.parseDouble(args[4]);
                     } catch (NumberFormatException e) {
-                        System.err.println("\nOne of given parameter for search directive is NaN");
-                        return;
+                        err.println("\nOne of given parameter for search directive is NaN");
+                        return true;
                     }
-                    System.out.printf("\nDisplaying points in given range (%s<=x<=%s, %s<=y<=%s) :\n", llx, urx, lly, ury );
-                    tree.printRange(new Point2D.Double(llx, lly), new Point2D.Double(urx, ury));
+                    out.printf("\nDisplaying points in given range (%s<=x<=%s, %s<=y<=%s) :\n", llx, urx, lly, ury );
+                    tree.printRange(new Point2D.Double(llx, lly), new Point2D.Double(urx, ury), out);
                     break;
                 }
                 case quit:
-                    System.out.println("\nEnd of directives...");
-                    System.exit(0);
+                    out.println("\nEnd of directives...");
+                    return false;
                 default:
-                    System.err.println("\nUnknown directive, terminating...");
-                    System.exit(1);
-                    break;
+                    err.println("\nUnknown directive, terminating...");
+                    return false;
             }
+            return true;
+        }
+    }
+
+    /**
+     * Parses and runs a single directive line on given tree.
+     * @param tree Tree to be queried
+     * @param line Directive line
+     * @param out Stream for results
+     * @param err Stream for errors
+     * @return False if directives should end
+     */
+    static boolean execute(KDTree tree, String line, PrintStream out, PrintStream err) {
+        String[] directive = tokenize(line);
+        Directive d = Directive.safeValueOf(directive[0].replace("-","").toLowerCase(), err);
+        return d.process(tree, directive, out, err);
+    }
+
+    /**
+     * Splits a directive line into directive and it's parameters.
+     * @param line Directive line
+     * @return Directive and it's parameters
+     */
+    private static String[] tokenize(String line) {
+        line = line.replaceAll("[ ]", "\t"); // In case of usage of tab instead of space
+        return line.split("\t");
+    }
+
+    /**
+     * Looks up the directive of a directive line.
+     * @param line Directive line
+     * @return The directive, null if line doesn't start with a known directive
+     */
+    private static Directive directiveOf(String line) {
+        try {
+            return Directive.valueOf(tokenize(line)[0].replace("-","").toLowerCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if given line starts with a known directive.
+     * @param line Directive line
+     * @return True if the line can be executed
+     */
+    static boolean isValid(String line) {
+        return directiveOf(line) != null;
+    }
+
+    /**
+     * Checks if given directive line is a valid read-only directive.
+     * @param line Directive line
+     * @return True if the line can run in parallel with other reads
+     */
+    private static boolean isReadOnly(String line) {
+        Directive d = directiveOf(line);
+        return d != null && d.isReadOnly(); // Invalid directive is reported and ends the directives, like a quit
+    }
+
+    /**
+     * Runs directive lines, with consecutive read-only directives grouped into batches that run in parallel on a worker pool.
+     * Each directive of a batch writes into it's own buffers, which are copied to the streams in original order once the
+     * batch is done. Inserts, removes and quit run alone, so every read sees the same tree as in a sequential run.
+     * @param tree Tree to be queried
+     * @param lines Directive lines
+     * @param threads Number of worker threads
+     * @param out Stream for results
+     * @param err Stream for errors
+     * @return False if directives ended with a quit
+     */
+    static boolean executeParallel(KDTree tree, List<String> lines, int threads, PrintStream out, PrintStream err) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            int i = 0;
+            while (i < lines.size()) {
+                if (!isReadOnly(lines.get(i))) { // A write is a barrier
+                    if (!execute(tree, lines.get(i++), out, err)) {
+                        return false;
+                    }
+                    continue;
+                }
+
+                List<Callable<ByteArrayOutputStream[]>> batch = new ArrayList<>();
+                for (; i < lines.size() && isReadOnly(lines.get(i)); i++) {
+                    final String line = lines.get(i);
+                    batch.add(() -> {
+                        ByteArrayOutputStream o = new ByteArrayOutputStream(), e = new ByteArrayOutputStream();
+                        try (PrintStream po = new PrintStream(o); PrintStream pe = new PrintStream(e)) {
+                            execute(tree, line, po, pe);
+                        }
+                        return new ByteArrayOutputStream[] {o, e};
+                    });
+                }
+                for (Future<ByteArrayOutputStream[]> f : workers.invokeAll(batch)) {
+                    ByteArrayOutputStream[] result = f.get();
+                    result[0].writeTo(out);
+                    result[1].writeTo(err);
+                }
+                out.flush();
+                err.flush();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Recovers the tree from given log directory. If directory has no persisted state yet, builds the tree from points file
+     * and stores it as the initial snapshot.
+     * @param pointsFileName The point list's file name
+     * @param logDirectory Directory of the write-ahead log and snapshots
+     * @return Recovered tree, logging its inserts & removes
+     */
+    static KDTree openPersistentTree(String pointsFileName, String logDirectory) {
+        try {
+            final MutationLog log = new MutationLog(logDirectory);
+            KDTree recovered;
+            if (log.hasState()) {
+                recovered = log.recover();
+                long ops = log.getRecoveredOperations();
+                System.err.printf("\nRecovered %d logged operations in %d ms (%.1f ms per million operations)\n", ops,
+                        log.getRecoveryMillis(), ops == 0 ? 0.0 : log.getRecoveryMillis() * 1e6 / ops);
+            } else {
+                recovered = KDTree.buildKDTree(pointsFileName);
+                log.snapshot(recovered.getPoints());
+                recovered.setLog(log);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> { // Let a background snapshot finish before exiting
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+            return recovered;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+            return null;
         }
     }
 
@@ -153,12 +452,40 @@ public class KDTreeQuery {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        tree = KDTree.buildKDTree(args[0]);
+        String logDirectory = null;
+        double compactionThreshold = -1; // Lazy removal is disabled by default
+        int threads = 0; // Directives run sequentially by default
+        for (int i = 2; i < args.length - 1; i++) {
+            if (args[i].equals("-wal")) {
+                logDirectory = args[i + 1];
+            } else if (args[i].equals("-lazy")) {
+                compactionThreshold = Double.parseDouble(args[i + 1]);
+            } else if (args[i].equals("-parallel")) {
+                threads = Integer.parseInt(args[i + 1]);
+                if (threads <= 0) { // Use all cores
+                    threads = Runtime.getRuntime().availableProcessors();
+                }
+            }
+        }
+
+        if (logDirectory == null) {
+            tree = KDTree.buildKDTree(args[0]);
+        } else {
+            tree = openPersistentTree(args[0], logDirectory);
+        }
+        if (compactionThreshold >= 0) {
+            tree.setLazyRemoval(true, compactionThreshold);
+        }
+        if (threads > 0) {
+            if (!executeParallel(tree, directivesList, threads, System.out, System.err)) {
+                System.exit(0);
+            }
+            return;
+        }
         for (String line : directivesList) {
-            line = line.replaceAll("[ ]", "\t"); // In case of usage of tab instead of space
-            String[] directive = line.split("\t");
-            Directive d = Directive.safeValueOf(directive[0].replace("-","").toLowerCase());
-            d.process(directive);
+            if (!execute(tree, line, System.out, System.err)) {
+                System.exit(0);
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running query server for a single shared KDTree. Listens on loopback only, and speaks the directive grammar of
+ * KDTreeQuery: each request is one directive line, and it's response is the directive's output followed by a line holding a
+ * single dot. Requests can be pipelined; responses are written in request order, and flushed once no more requests are waiting
+ * in the connection. Each connection is handled on a virtual thread when the runtime has them, on a pooled thread otherwise.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class KDTreeServer {
+    public static final int DEFAULT_PORT = 4716;
+    public static final String END_OF_RESPONSE = ".";
+
+    private final KDTree tree;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+
+    /**
+     * Constructor. Binds the server socket.
+     * @param tree Tree shared by all connections
+     * @param port Port on loopback address, 0 for any free port
+     * @throws IOException If the socket can't be bound
+     */
+    public KDTreeServer(KDTree tree, int port) throws IOException {
+        this.tree = tree;
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the runtime supports it (Java 21+). Looked up reflectively, so the server
+     * still compiles and runs on Java 8, with a cached thread pool.
+     * @return Executor for connection handlers
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "kdtree-connection");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * @return Port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handle(socket));
+            } catch (SocketException e) {
+                break; // Server socket is closed
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Serves requests of a single connection until the client disconnects or sends quit.
+     * @param socket Client connection
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            s.setTcpNoDelay(true);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            PrintStream responseStream = new PrintStream(response, false, "UTF-8");
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                // Directive runs into a private buffer, so tree's lock is never held while writing to the socket
+                response.reset();
+                boolean more = true;
+                if (KDTreeQuery.isValid(line.trim())) {
+                    more = KDTreeQuery.execute(tree, line.trim(), responseStream, responseStream);
+                } else { // Unlike a directives file, an invalid line doesn't end the connection
+                    responseStream.println("\nInvalid directive");
+                }
+                responseStream.flush();
+                out.write(response.toString("UTF-8"));
+                out.write(END_OF_RESPONSE);
+                out.write('\n');
+                if (!more) {
+                    break;
+                }
+                if (!in.ready()) { // Pipelined requests are answered with a single flush
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            // Client went away, nothing to clean up besides the socket
+        }
+    }
+
+    /**
+     * Stops accepting connections. Open connections are served until they are closed by their clients.
+     * @throws IOException If the server socket can't be closed
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 1 && !args[1].startsWith("-") ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        String logDirectory = null;
+        double compactionThreshold = -1; // Lazy removal is disabled by default
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals("-wal")) {
+                logDirectory = args[i + 1];
+            } else if (args[i].equals("-lazy")) {
+                compactionThreshold = Double.parseDouble(args[i + 1]);
+            }
+        }
+
+        KDTree tree = logDirectory == null ? KDTree.buildKDTree(args[0]) : KDTreeQuery.openPersistentTree(args[0], logDirectory);
+        if (compactionThreshold >= 0) {
+            tree.setLazyRemoval(true, compactionThreshold);
+        }
+        try {
+            KDTreeServer server = new KDTreeServer(tree, port);
+            System.err.printf("Serving %d points on %s:%d%n", tree.size(), InetAddress.getLoopbackAddress().getHostAddress(),
+                    server.getPort());
+            server.serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
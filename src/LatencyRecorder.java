@@ -0,0 +1,92 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Collects request latencies and reports throughput and latency percentiles. Not thread safe; each thread keeps it's own
+ * recorder, and recorders are merged at the end.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class LatencyRecorder {
+    private long[] samples; // Latencies in nanoseconds
+    private int count;
+    private boolean sorted;
+
+    public LatencyRecorder() {
+        this.samples = new long[1024];
+    }
+
+    /**
+     * Records a latency.
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    /**
+     * Adds all latencies of given recorder to this one.
+     * @param other Recorder to be merged
+     */
+    public void merge(LatencyRecorder other) {
+        if (count + other.count > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + other.count));
+        }
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        sorted = false;
+    }
+
+    /**
+     * @return Number of recorded latencies
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return Sum of recorded latencies in nanoseconds
+     */
+    public long total() {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the latency below which given fraction of recorded latencies fall (nearest rank).
+     * @param fraction Fraction between 0 and 1, e.g. 0.99
+     * @return Latency in nanoseconds, 0 if nothing is recorded
+     */
+    public long percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(fraction * count);
+        return samples[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /**
+     * Prints throughput and latency percentiles.
+     * @param label Name of the measured operation
+     * @param elapsedNanos Wall clock time of the measurement
+     * @param out Output stream
+     */
+    public void print(String label, long elapsedNanos, PrintStream out) {
+        out.printf("%s: %d requests in %.2f s, %.0f requests/s%n", label, count, elapsedNanos / 1e9,
+                elapsedNanos == 0 ? 0.0 : count * 1e9 / elapsedNanos);
+        out.printf("  latency (us) p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", percentile(0.5) / 1e3,
+                percentile(0.9) / 1e3, percentile(0.99) / 1e3, percentile(0.999) / 1e3, percentile(1) / 1e3);
+    }
+}
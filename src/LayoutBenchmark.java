@@ -0,0 +1,138 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares node layouts of a tree over the same uniform points: FrozenKDTree arrays in van Emde Boas, breadth-first and
+ * preorder order, and the KDNode graph of a KDTree (pointer layout). For each layout, reports build time and the average
+ * time of searches for existing points (root-to-leaf walks in random order) and of small range queries.
+ * Cache misses are not reported, since Java can't read hardware counters. To count them, run a single layout per JVM
+ * under perf stat, e.g. perf stat -e cache-misses,LLC-load-misses java LayoutBenchmark veb 10000000, and once more with 0
+ * queries to subtract misses of the build.
+ * Usage: java LayoutBenchmark [veb|bfs|preorder|pointer|all] [points] [queries] [heap|offheap]
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class LayoutBenchmark {
+    private static final String[] LAYOUTS = {"veb", "bfs", "preorder", "pointer"};
+
+    /**
+     * Query methods of a layout.
+     */
+    private interface Queries {
+        boolean search(Point2D p);
+
+        int range(Point2D llc, Point2D urc);
+    }
+
+    /**
+     * Builds the tree of a layout.
+     * @param layout Layout name
+     * @param xs X coords of points
+     * @param ys Y coords of points
+     * @param offHeap True for off-heap node storage of frozen trees
+     * @return Queries over the built tree
+     */
+    private static Queries build(String layout, double[] xs, double[] ys, boolean offHeap) {
+        if (layout.equals("pointer")) {
+            List<Point2D> points = new ArrayList<>(xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                points.add(new Point2D.Double(xs[i], ys[i]));
+            }
+            KDTree tree = KDTree.buildKDTree(points);
+            return new Queries() {
+                public boolean search(Point2D p) {
+                    return tree.search(p) != null;
+                }
+
+                public int range(Point2D llc, Point2D urc) {
+                    int n = 0;
+                    for (Iterator<Point2D> it = tree.rangeIterator(llc, urc); it.hasNext(); it.next()) {
+                        n++;
+                    }
+                    return n;
+                }
+            };
+        }
+        FrozenKDTree.Layout order = layout.equals("veb") ? FrozenKDTree.Layout.VanEmdeBoas
+                : layout.equals("bfs") ? FrozenKDTree.Layout.BreadthFirst : FrozenKDTree.Layout.Preorder;
+        FrozenKDTree tree = FrozenKDTree.bulkLoad(xs, ys, offHeap, order);
+        return new Queries() {
+            public boolean search(Point2D p) {
+                return tree.search(p);
+            }
+
+            public int range(Point2D llc, Point2D urc) {
+                return tree.range(llc, urc).size();
+            }
+        };
+    }
+
+    /**
+     * Runs searches and range queries.
+     * @param tree Queries over the tree
+     * @param targets Searched points
+     * @param side Side of range query squares
+     * @param random Random source of range query corners
+     * @return Nanoseconds per search and per range query, and number of points found
+     */
+    private static long[] run(Queries tree, Point2D[] targets, double side, Random random) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (Point2D p : targets) {
+            found += tree.search(p) ? 1 : 0;
+        }
+        long searchNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int q = 0; q < targets.length; q++) {
+            double x = random.nextDouble() * 1000, y = random.nextDouble() * 1000;
+            found += tree.range(new Point2D.Double(x, y), new Point2D.Double(x + side, y + side));
+        }
+        long rangeNanos = System.nanoTime() - start;
+        int n = Math.max(1, targets.length);
+        return new long[] {searchNanos / n, rangeNanos / n, found};
+    }
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "all";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        boolean offHeap = args.length > 3 && args[3].equals("offheap");
+        if (!mode.equals("all") && !Arrays.asList(LAYOUTS).contains(mode)) {
+            System.err.println("Usage: java LayoutBenchmark [veb|bfs|preorder|pointer|all] [points] [queries] [heap|offheap]");
+            System.exit(1);
+        }
+
+        Random random = new Random(1);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 1000;
+            ys[i] = random.nextDouble() * 1000;
+        }
+        Point2D[] targets = new Point2D[queries];
+        for (int q = 0; q < queries; q++) {
+            int i = random.nextInt(n);
+            targets[q] = new Point2D.Double(xs[i], ys[i]);
+        }
+        double side = 1000 * Math.sqrt(10.0 / n); // About 10 points per range query
+
+        System.out.printf("%d points, %d queries, %s storage for frozen layouts%n", n, queries, offHeap ? "off-heap" : "heap");
+        for (String layout : LAYOUTS) {
+            if (!mode.equals("all") && !mode.equals(layout)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            Queries tree = build(layout, xs, ys, offHeap);
+            long buildNanos = System.nanoTime() - start;
+            run(tree, Arrays.copyOf(targets, Math.min(queries, 100000)), side, new Random(2)); // Warm up the JIT compiler
+            long[] r = run(tree, targets, side, new Random(3));
+            System.out.printf("  %-8s built in %.2f s, search %d ns, range %d ns (%d found)%n", layout, buildNanos / 1e9,
+                    r[0], r[1], r[2]);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An insert optimized kd-tree, built with Bentley-Saxe logarithmic method. New points are collected in a small unsorted buffer.
+ * When the buffer fills up, it's merged with the smaller levels into a statically bulk built, perfectly balanced FrozenKDTree.
+ * Level i holds buffer size * 2^i points, like digits of a binary counter, so an insert costs amortized O(log^2 n).
+ * Queries fan out to the buffer and all levels. Removes mark points with tombstones, which are dropped at the next merge.
+ * Tombstones are counted per coordinates, so a point stored more than once is removed one copy at a time.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class LogarithmicKDTree {
+    private final double[] bufferX;
+    private final double[] bufferY;
+    private int buffered; // Number of points in buffer
+    private final List<FrozenKDTree> levels; // null for an empty level
+    private final List<double[]> levelX; // Points of each level, kept for merges
+    private final List<double[]> levelY;
+    private final Map<Point2D, Integer> tombstones; // Number of removed copies of each point still stored in levels
+    private int size;
+
+    /**
+     * Constructor.
+     * @param bufferSize Number of points buffered before a merge
+     */
+    public LogarithmicKDTree(int bufferSize) {
+        this.bufferX = new double[bufferSize];
+        this.bufferY = new double[bufferSize];
+        this.levels = new ArrayList<>();
+        this.levelX = new ArrayList<>();
+        this.levelY = new ArrayList<>();
+        this.tombstones = new HashMap<>();
+    }
+
+    /**
+     * Default constructor. Buffers 256 points.
+     */
+    public LogarithmicKDTree() {
+        this(256);
+    }
+
+    /**
+     * @return Number of points in tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of levels, including empty ones
+     */
+    public int levelCount() {
+        return levels.size();
+    }
+
+    /**
+     * Inserts a point to tree. Merges the buffer into levels if it's full.
+     * @param point Point to be inserted
+     */
+    public void insert(Point2D point) {
+        size++;
+        if (consumeTombstone(point)) { // Point is still stored in a level, just revive it
+            return;
+        }
+        bufferX[buffered] = point.getX();
+        bufferY[buffered] = point.getY();
+        buffered++;
+        if (buffered == bufferX.length) {
+            merge();
+        }
+    }
+
+    /**
+     * Merges the buffer and all levels below the first empty level into that level, dropping removed points.
+     */
+    private void merge() {
+        int target = 0;
+        int count = buffered;
+        while (target < levels.size() && levels.get(target) != null) {
+            count += levelX.get(target).length;
+            target++;
+        }
+
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        int n = 0;
+        for (int i = 0; i < buffered; i++) {
+            xs[n] = bufferX[i];
+            ys[n++] = bufferY[i];
+        }
+        for (int l = 0; l < target; l++) {
+            double[] lx = levelX.get(l), ly = levelY.get(l);
+            for (int i = 0; i < lx.length; i++) {
+                if (!tombstones.isEmpty() && consumeTombstone(new Point2D.Double(lx[i], ly[i]))) {
+                    continue; // Removed point is dropped for good
+                }
+                xs[n] = lx[i];
+                ys[n++] = ly[i];
+            }
+            levels.set(l, null);
+            levelX.set(l, null);
+            levelY.set(l, null);
+        }
+        if (n < count) {
+            double[] tx = new double[n], ty = new double[n];
+            System.arraycopy(xs, 0, tx, 0, n);
+            System.arraycopy(ys, 0, ty, 0, n);
+            xs = tx;
+            ys = ty;
+        }
+
+        if (target == levels.size()) {
+            levels.add(null);
+            levelX.add(null);
+            levelY.add(null);
+        }
+        levels.set(target, FrozenKDTree.bulkLoad(xs, ys, false));
+        levelX.set(target, xs);
+        levelY.set(target, ys);
+        buffered = 0;
+    }
+
+    /**
+     * Takes back a tombstone of given point, if it has any.
+     * @param point The point
+     * @return True if a tombstone is taken back
+     */
+    private boolean consumeTombstone(Point2D point) {
+        Integer count = tombstones.get(point);
+        if (count == null) {
+            return false;
+        }
+        if (count == 1) {
+            tombstones.remove(point);
+        } else {
+            tombstones.put(point, count - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Counts copies of given point stored in levels that are not removed.
+     * @param point The point
+     * @return Number of remaining copies
+     */
+    private int levelCopies(Point2D point) {
+        int copies = 0;
+        for (FrozenKDTree level : levels) {
+            if (level != null) {
+                copies += level.rangeCount(point, point);
+            }
+        }
+        return copies - tombstones.getOrDefault(point, 0);
+    }
+
+    /**
+     * Removes a point from tree if it exists. Buffered points are removed at once, others are marked with a tombstone.
+     * @param point Point to be removed
+     * @return True if point is removed, false if it's not found
+     */
+    public boolean remove(Point2D point) {
+        for (int i = 0; i < buffered; i++) {
+            if (bufferX[i] == point.getX() && bufferY[i] == point.getY()) {
+                buffered--;
+                bufferX[i] = bufferX[buffered];
+                bufferY[i] = bufferY[buffered];
+                size--;
+                return true;
+            }
+        }
+        if (levelCopies(point) > 0) {
+            tombstones.merge(new Point2D.Double(point.getX(), point.getY()), 1, Integer::sum);
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Searches the buffer and all levels for given point as parameter.
+     * @param point The point going to be searched
+     * @return True if point is found
+     */
+    public boolean search(Point2D point) {
+        for (int i = 0; i < buffered; i++) {
+            if (bufferX[i] == point.getX() && bufferY[i] == point.getY()) {
+                return true;
+            }
+        }
+        if (!tombstones.containsKey(point)) {
+            for (FrozenKDTree level : levels) {
+                if (level != null && level.search(point)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return levelCopies(point) > 0;
+    }
+
+    /**
+     * Returns points in given range (closed) from the buffer and all levels.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Points in range
+     */
+    public List<Point2D> range(Point2D llc, Point2D urc) {
+        List<Point2D> found = new ArrayList<>();
+        for (int i = 0; i < buffered; i++) {
+            if (bufferX[i] >= llc.getX() && bufferX[i] <= urc.getX() && bufferY[i] >= llc.getY() && bufferY[i] <= urc.getY()) {
+                found.add(new Point2D.Double(bufferX[i], bufferY[i]));
+            }
+        }
+        Map<Point2D, Integer> hidden = tombstones.isEmpty() ? tombstones : new HashMap<>(tombstones); // Copies still to be skipped
+        for (FrozenKDTree level : levels) {
+            if (level == null) {
+                continue;
+            }
+            for (Point2D p : level.range(llc, urc)) {
+                Integer count = hidden.isEmpty() ? null : hidden.get(p);
+                if (count == null) {
+                    found.add(p);
+                } else if (count == 1) {
+                    hidden.remove(p);
+                } else {
+                    hidden.put(p, count - 1);
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,555 @@
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage for a KDTree's mutations. Inserts and removes are appended to a binary write-ahead log, fsync calls are
+ * shared by concurrent writers (group commit), and the whole point set is periodically compacted into a snapshot file.
+ * Recovery loads the snapshot, replays the log tail and bulk builds the tree.
+ * Each append gets a sequence number, and commit returns once the record with that number is forced to disk. A writer that
+ * finds no fsync in progress starts one for everything appended so far; writers arriving meanwhile wait and are committed
+ * together by the next fsync. So a mutation is never acknowledged before it's durable, and under concurrent writes a single
+ * fsync covers many of them.
+ * The log is split into generations, wal-N.bin. A snapshot switches appends to a new generation and records it in it's
+ * header; it covers every older generation, which is deleted once the snapshot is in place. Recovery skips generations older
+ * than the snapshot's, so a crash between writing the snapshot and deleting the old log never replays a mutation twice.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class MutationLog {
+    public static final byte INSERT = 1;
+    public static final byte REMOVE = 2;
+
+    private static final int SNAPSHOT_MAGIC = 0x4B445347; // "KDSG", generation and points with payloads
+    private static final int RECORD_SIZE = 1 + 8 + 8 + 8 + 8 + 4; // op, x, y, id, weight, crc
+
+    private final Path directory;
+    private final Path snapshotFile;
+    private final ByteBuffer buffer; // Appended records not yet written to the log file
+    private final int snapshotInterval; // Number of records between snapshots
+    private final Object snapshotLock = new Object(); // Serializes snapshot writers
+    private FileChannel wal; // Log file of current generation
+    private long generation; // Generation appends go to
+    private long appended; // Sequence number of latest appended record
+    private long durable; // Sequence number of latest record forced to disk
+    private boolean committing; // An fsync is in progress
+    private boolean snapshotting; // A background snapshot is being written
+    private int sinceSnapshot; // Records appended since last snapshot
+    private ExecutorService snapshotter; // Background snapshot thread, created on first use
+    private long recoveredOperations;
+    private long recoveryMillis;
+
+    /**
+     * Constructor. Opens (or creates) the log file of latest generation in given directory.
+     * @param directory Directory of the log and snapshot files
+     * @param groupSize Number of records buffered in memory before they are written to the log file
+     * @param snapshotInterval Number of logged records after which a snapshot is due
+     * @throws IOException If the files can't be opened
+     */
+    public MutationLog(String directory, int groupSize, int snapshotInterval) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+        this.snapshotFile = this.directory.resolve("snapshot.bin");
+        this.buffer = ByteBuffer.allocate(RECORD_SIZE * Math.max(1, groupSize));
+        this.snapshotInterval = snapshotInterval;
+        long latest = snapshotGeneration();
+        for (long g : generations().keySet()) {
+            latest = Math.max(latest, g);
+        }
+        this.generation = latest;
+        this.wal = open(latest);
+    }
+
+    /**
+     * Constructor with default buffer and snapshot settings.
+     * @param directory Directory of the log and snapshot files
+     * @throws IOException If the files can't be opened
+     */
+    public MutationLog(String directory) throws IOException {
+        this(directory, 64, 1000000);
+    }
+
+    /**
+     * Opens log file of given generation for appending.
+     * @param g Generation
+     * @return Log file
+     * @throws IOException If the file can't be opened
+     */
+    private FileChannel open(long g) throws IOException {
+        return FileChannel.open(directory.resolve("wal-" + g + ".bin"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Lists log files in directory.
+     * @return Log files by generation, in increasing order
+     * @throws IOException If the directory can't be read
+     */
+    private Map<Long, Path> generations() throws IOException {
+        Map<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory, "wal-*.bin")) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(4, name.length() - 4)), p);
+                } catch (NumberFormatException e) { // Not a log file
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Reads the generation from snapshot's header.
+     * @return First generation not covered by the snapshot, 0 if there is no snapshot
+     * @throws IOException If the snapshot can't be read or is invalid
+     */
+    private long snapshotGeneration() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotFile))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Invalid snapshot file " + snapshotFile);
+            }
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Checks if there is any previously persisted state in log directory.
+     * @return True if a snapshot or a non-empty log exists
+     * @throws IOException If the log can't be read
+     */
+    public synchronized boolean hasState() throws IOException {
+        if (Files.exists(snapshotFile)) {
+            return true;
+        }
+        for (Path p : generations().values()) {
+            if (Files.size(p) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a mutation to the log. The record isn't durable until commit is called with the returned sequence number.
+     * @param op Operation, INSERT or REMOVE
+     * @param p Point of the operation, with it's payload if it's a WeightedPoint
+     * @return Sequence number of the record
+     * @throws IOException If the record can't be written
+     */
+    public synchronized long append(byte op, Point2D p) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        int start = buffer.position();
+        buffer.put(op);
+        buffer.putDouble(p.getX());
+        buffer.putDouble(p.getY());
+        buffer.putLong(WeightedPoint.idOf(p));
+        buffer.putDouble(WeightedPoint.weightOf(p));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, RECORD_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+        sinceSnapshot++;
+        return ++appended;
+    }
+
+    /**
+     * Waits until given record is forced to disk. If no fsync is in progress, the caller forces all records appended so far,
+     * committing other waiting writers' records along with it's own. The fsync runs without holding the log's monitor, so
+     * records appended meanwhile form the next group.
+     * @param seq Sequence number returned by append
+     * @throws IOException If the records can't be written, or the thread is interrupted while waiting
+     */
+    public void commit(long seq) throws IOException {
+        long target;
+        FileChannel ch;
+        synchronized (this) {
+            while (durable < seq && committing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for group commit");
+                }
+            }
+            if (durable >= seq) {
+                return;
+            }
+            writeBuffer();
+            committing = true;
+            target = appended;
+            ch = wal;
+        }
+        boolean forced = false;
+        try {
+            ch.force(false);
+            forced = true;
+        } finally {
+            synchronized (this) {
+                if (forced) {
+                    durable = Math.max(durable, target);
+                }
+                committing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces all appended records to disk.
+     * @throws IOException If the records can't be written
+     */
+    public void sync() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appended;
+        }
+        commit(seq);
+    }
+
+    /**
+     * Writes buffered records to the end of current log file, without forcing them.
+     * @throws IOException If the records can't be written
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        wal.position(wal.size());
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Checks if enough records are logged since latest snapshot.
+     * @return True if a snapshot should be taken, false also while a background snapshot is still being written
+     */
+    public synchronized boolean isSnapshotDue() {
+        return sinceSnapshot >= snapshotInterval && !snapshotting;
+    }
+
+    /**
+     * Forces current generation to disk and switches appends to a new generation. Waits for a running fsync to finish, so
+     * the old log file isn't closed under it. Records appended before the switch are committed by the switch.
+     * @return New generation, the first one a snapshot of current points doesn't cover
+     * @throws IOException If the log can't be written
+     */
+    private synchronized long rotate() throws IOException {
+        while (committing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while rotating the log");
+            }
+        }
+        writeBuffer();
+        wal.force(false);
+        FileChannel next = open(generation + 1);
+        wal.close();
+        wal = next;
+        generation++;
+        durable = appended;
+        sinceSnapshot = 0;
+        notifyAll();
+        return generation;
+    }
+
+    /**
+     * Writes all points as a new snapshot, then deletes the log it covers. Caller must pass the points as they were when
+     * the log was rotated to given generation.
+     * Snapshot is written to a temporary file and moved in place, so a crash never leaves a half written snapshot behind.
+     * @param points Points to be stored
+     * @param covered First generation not covered by the points
+     * @throws IOException If the snapshot can't be written
+     */
+    private void writeSnapshot(List<Point2D> points, long covered) throws IOException {
+        synchronized (snapshotLock) {
+            Path tmp = snapshotFile.resolveSibling("snapshot.tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer out = ByteBuffer.allocate(1 << 16);
+                out.putInt(SNAPSHOT_MAGIC);
+                out.putLong(covered);
+                out.putLong(points.size());
+                for (Point2D p : points) {
+                    if (out.remaining() < 32) {
+                        writeFully(ch, out);
+                    }
+                    out.putDouble(p.getX());
+                    out.putDouble(p.getY());
+                    out.putLong(WeightedPoint.idOf(p));
+                    out.putDouble(WeightedPoint.weightOf(p));
+                }
+                writeFully(ch, out);
+                ch.force(false);
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteCovered(covered);
+        }
+    }
+
+    /**
+     * Deletes log files older than given generation.
+     * @param covered First generation not covered by the snapshot
+     * @throws IOException If a file can't be deleted
+     */
+    private void deleteCovered(long covered) throws IOException {
+        for (Map.Entry<Long, Path> e : generations().entrySet()) {
+            if (e.getKey() < covered) {
+                Files.deleteIfExists(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stores given points as a new snapshot and waits until it's written. Points must be current points of the tree, with no
+     * mutation appended since they were collected.
+     * @param points Current points of the tree
+     * @throws IOException If the snapshot can't be written
+     */
+    public void snapshot(List<Point2D> points) throws IOException {
+        writeSnapshot(points, rotate());
+    }
+
+    /**
+     * Stores given points as a new snapshot on a background thread. The log is rotated before returning, so mutations
+     * appended afterwards go to the new generation and are replayed on top of the snapshot. Points must be a copy taken with
+     * no mutation appended since, e.g. under tree's write lock.
+     * @param points Copy of current points of the tree
+     * @throws IOException If the log can't be rotated
+     */
+    public synchronized void snapshotInBackground(List<Point2D> points) throws IOException {
+        long covered = rotate();
+        if (snapshotter == null) {
+            snapshotter = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "mutation-log-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        snapshotting = true;
+        snapshotter.execute(() -> {
+            try {
+                writeSnapshot(points, covered);
+            } catch (IOException e) { // Log of older generations is kept, so nothing is lost
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    snapshotting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Recreates a persisted point. A point is stored with id 0 and weight 0 if it has no payload, which reads back the same
+     * through WeightedPoint.idOf and weightOf, so it's restored as a bare point.
+     * @param x X coord
+     * @param y Y coord
+     * @param id Record id
+     * @param weight Weight
+     * @return Restored point
+     */
+    private static Point2D restore(double x, double y, long id, double weight) {
+        if (id == 0 && weight == 0) {
+            return new Point2D.Double(x, y);
+        }
+        return new WeightedPoint(x, y, id, weight);
+    }
+
+    /**
+     * Replays a remove: drops a single copy of the point's location, the one with same payload if there is one.
+     * @param points Copies of each location
+     * @param p Removed point, with it's payload
+     */
+    private static void removeCopy(Map<Point2D, List<Point2D>> points, Point2D p) {
+        Point2D location = new Point2D.Double(p.getX(), p.getY());
+        List<Point2D> copies = points.get(location);
+        if (copies == null) {
+            return;
+        }
+        int idx = copies.size() - 1;
+        for (int i = 0; i < copies.size(); i++) {
+            if (WeightedPoint.idOf(copies.get(i)) == WeightedPoint.idOf(p)
+                    && WeightedPoint.weightOf(copies.get(i)) == WeightedPoint.weightOf(p)) {
+                idx = i;
+                break;
+            }
+        }
+        copies.remove(idx);
+        if (copies.isEmpty()) {
+            points.remove(location);
+        }
+    }
+
+    /**
+     * Writes buffer's content to given channel and clears the buffer.
+     * @param ch Target channel
+     * @param out Buffer to be written
+     * @throws IOException If the buffer can't be written
+     */
+    private static void writeFully(FileChannel ch, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            ch.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Replays a log file onto given points. A torn record (partial write or bad checksum) ends the replay and is cut off, so
+     * following appends start from a clean record boundary.
+     * @param file Log file
+     * @param points Copies of each location
+     * @return Number of replayed records
+     * @throws IOException If the file can't be read
+     */
+    private static long replay(Path file, Map<Point2D, List<Point2D>> points) throws IOException {
+        long valid = 0;
+        long ops = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] record = new byte[RECORD_SIZE];
+            CRC32 crc = new CRC32();
+            while (true) {
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) { // End of log, or a partial record
+                    break;
+                }
+                ByteBuffer rec = ByteBuffer.wrap(record);
+                crc.reset();
+                crc.update(record, 0, RECORD_SIZE - 4);
+                if (rec.getInt(RECORD_SIZE - 4) != (int) crc.getValue()) {
+                    break;
+                }
+                Point2D p = restore(rec.getDouble(1), rec.getDouble(9), rec.getLong(17), rec.getDouble(25));
+                if (record[0] == INSERT) {
+                    points.computeIfAbsent(new Point2D.Double(p.getX(), p.getY()), k -> new ArrayList<>()).add(p);
+                } else if (record[0] == REMOVE) {
+                    removeCopy(points, p);
+                } else {
+                    break;
+                }
+                valid += RECORD_SIZE;
+                ops++;
+            }
+        }
+        if (valid < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+                ch.force(false);
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Rebuilds the tree from latest snapshot and the log generations it doesn't cover. Older generations left behind by a
+     * crash before their deletion are deleted without replay.
+     * @return Recovered tree, with this log attached
+     * @throws IOException If the files can't be read
+     */
+    public synchronized KDTree recover() throws IOException {
+        long start = System.nanoTime();
+        // Copies of each location, a point can be inserted more than once
+        Map<Point2D, List<Point2D>> points = new LinkedHashMap<>();
+        long covered = 0;
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Invalid snapshot file " + snapshotFile);
+                }
+                covered = in.readLong();
+                long count = in.readLong();
+                for (long i = 0; i < count; i++) {
+                    Point2D p = restore(in.readDouble(), in.readDouble(), in.readLong(), in.readDouble());
+                    points.computeIfAbsent(new Point2D.Double(p.getX(), p.getY()), k -> new ArrayList<>()).add(p);
+                }
+            }
+        }
+
+        long ops = 0;
+        for (Map.Entry<Long, Path> e : generations().entrySet()) {
+            if (e.getKey() >= covered) {
+                ops += replay(e.getValue(), points);
+            }
+        }
+        deleteCovered(covered);
+
+        List<Point2D> all = new ArrayList<>();
+        for (List<Point2D> copies : points.values()) {
+            all.addAll(copies);
+        }
+        KDTree tree = KDTree.buildKDTree(all);
+        tree.setLog(this);
+        sinceSnapshot = (int) Math.min(Integer.MAX_VALUE, ops);
+        recoveredOperations = ops;
+        recoveryMillis = (System.nanoTime() - start) / 1000000;
+        return tree;
+    }
+
+    /**
+     * @return Number of log records replayed by latest recovery
+     */
+    public long getRecoveredOperations() {
+        return recoveredOperations;
+    }
+
+    /**
+     * @return Duration of latest recovery in milliseconds
+     */
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    /**
+     * Waits for a background snapshot to finish, commits appended records and closes the log.
+     * @throws IOException If the records can't be written
+     */
+    public void close() throws IOException {
+        ExecutorService s;
+        synchronized (this) {
+            if (!wal.isOpen()) {
+                return;
+            }
+            s = snapshotter;
+        }
+        if (s != null) {
+            s.shutdown();
+            try {
+                s.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sync();
+        synchronized (this) {
+            wal.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Crash recovery checks of MutationLog. A crash is simulated by leaving the log directory as it would be at the crash point,
+ * then recovering from it with a new log and comparing recovered points (with payloads and duplicates) to the tree's.
+ * Prints each failed check and exits with status 1 if there is any.
+ * Usage: java MutationLogTest
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class MutationLogTest {
+    private static final PrintStream SILENT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    /**
+     * A crash scenario, run in an empty log directory.
+     */
+    private interface Scenario {
+        void run(Path dir) throws Exception;
+    }
+
+    private static int failures;
+
+    /**
+     * Records a failed check.
+     * @param ok Result of the check
+     * @param message Description of the check
+     */
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + message);
+        }
+    }
+
+    /**
+     * @param points Points
+     * @return Sorted descriptions of the points, with payloads, for comparing them as multisets
+     */
+    private static List<String> contents(List<Point2D> points) {
+        List<String> out = new ArrayList<>();
+        for (Point2D p : points) {
+            out.add(p.getX() + " " + p.getY() + " " + WeightedPoint.idOf(p) + " " + WeightedPoint.weightOf(p));
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /**
+     * Recovers the points persisted in a directory, with a new log.
+     * @param dir Log directory
+     * @return Recovered points
+     * @throws IOException If the log can't be read
+     */
+    private static List<Point2D> recover(Path dir) throws IOException {
+        MutationLog log = new MutationLog(dir.toString());
+        try {
+            return log.recover().getPoints();
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * @param dir Log directory
+     * @return Contents of all log files
+     * @throws IOException If the files can't be read
+     */
+    private static Map<Path, byte[]> logFiles(Path dir) throws IOException {
+        Map<Path, byte[]> files = new HashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "wal-*.bin")) {
+            for (Path p : ds) {
+                files.put(p, Files.readAllBytes(p));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Puts saved files back in place.
+     * @param files Saved files
+     * @throws IOException If the files can't be written
+     */
+    private static void restore(Map<Path, byte[]> files) throws IOException {
+        for (Map.Entry<Path, byte[]> e : files.entrySet()) {
+            Files.write(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Crash after the snapshot is moved in place, before the log it covers is deleted. Recovery must not replay the old
+     * generation on top of the snapshot.
+     */
+    private static void crashAfterSnapshotMove(Path dir) throws IOException {
+        MutationLog log = new MutationLog(dir.toString());
+        KDTree tree = log.recover();
+        tree.insert(new WeightedPoint(1, 1, 7, 0.5), SILENT);
+        tree.insert(new Point2D.Double(1, 1), SILENT);
+        tree.insert(new Point2D.Double(2, 2), SILENT);
+        Map<Path, byte[]> covered = logFiles(dir);
+        log.snapshot(tree.getPoints());
+        check(!Files.exists(covered.keySet().iterator().next()), "snapshot deletes the log it covers");
+        tree.insert(new Point2D.Double(3, 3), SILENT);
+        tree.remove(new Point2D.Double(2, 2), SILENT);
+        List<Point2D> expected = tree.getPoints();
+        log.close();
+
+        restore(covered); // As if the crash came before the deletion
+        check(contents(recover(dir)).equals(contents(expected)), "crash after snapshot move replays no covered record");
+        for (Path p : covered.keySet()) {
+            check(!Files.exists(p), "recovery deletes covered log " + p.getFileName());
+        }
+        check(contents(recover(dir)).equals(contents(expected)), "second recovery after crash after snapshot move");
+    }
+
+    /**
+     * Crash after the log is rotated, before the snapshot is moved in place. Recovery must replay both generations.
+     */
+    private static void crashBeforeSnapshotMove(Path dir) throws IOException {
+        MutationLog log = new MutationLog(dir.toString());
+        KDTree tree = log.recover();
+        tree.insert(new Point2D.Double(1, 1), SILENT);
+        tree.insert(new WeightedPoint(2, 2, 3, 1.5), SILENT);
+        Map<Path, byte[]> covered = logFiles(dir);
+        log.snapshot(tree.getPoints());
+        tree.insert(new Point2D.Double(4, 4), SILENT);
+        List<Point2D> expected = tree.getPoints();
+        log.close();
+
+        Files.delete(dir.resolve("snapshot.bin"));
+        Files.write(dir.resolve("snapshot.tmp"), new byte[] {1, 2, 3});
+        restore(covered);
+        check(contents(recover(dir)).equals(contents(expected)), "crash before snapshot move replays all generations");
+    }
+
+    /**
+     * Crash in the middle of a record write. Recovery cuts the torn record off, and later appends are recovered too.
+     */
+    private static void tornRecord(Path dir) throws IOException {
+        MutationLog log = new MutationLog(dir.toString());
+        KDTree tree = log.recover();
+        tree.insert(new Point2D.Double(5, 5), SILENT);
+        tree.insert(new Point2D.Double(6, 6), SILENT);
+        List<Point2D> expected = tree.getPoints();
+        log.close();
+
+        for (Path p : logFiles(dir).keySet()) {
+            Files.write(p, new byte[] {MutationLog.INSERT, 0, 0, 0, 0, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+        }
+        check(contents(recover(dir)).equals(contents(expected)), "torn record is cut off");
+
+        log = new MutationLog(dir.toString());
+        tree = log.recover();
+        tree.insert(new Point2D.Double(7, 7), SILENT);
+        expected = tree.getPoints();
+        log.close();
+        check(contents(recover(dir)).equals(contents(expected)), "appends after a torn record are recovered");
+    }
+
+    /**
+     * Crash right after insert and remove return. Every acknowledged mutation must already be in the log files, without
+     * closing the log.
+     */
+    private static void crashAfterAcknowledge(Path dir) throws IOException {
+        MutationLog log = new MutationLog(dir.toString());
+        KDTree tree = log.recover();
+        for (int i = 0; i < 100; i++) {
+            tree.insert(new WeightedPoint(i % 10, i % 7, i, i), SILENT);
+        }
+        tree.remove(new Point2D.Double(3, 3), SILENT);
+        check(contents(recover(dir)).equals(contents(tree.getPoints())), "acknowledged mutations are in the log");
+        log.close();
+    }
+
+    /**
+     * Concurrent writers with frequent background snapshots, recovered once the last snapshot is written.
+     */
+    private static void concurrentWithSnapshots(Path dir) throws IOException, InterruptedException {
+        MutationLog log = new MutationLog(dir.toString(), 8, 50);
+        KDTree tree = log.recover();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int seed = t;
+            writers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 500; i++) {
+                    Point2D p = new WeightedPoint(random.nextInt(20), random.nextInt(20), seed * 1000 + i, i);
+                    if (random.nextInt(4) == 0) {
+                        tree.remove(p, SILENT);
+                    } else {
+                        tree.insert(p, SILENT);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread w : writers) {
+            w.join();
+        }
+        List<Point2D> expected = tree.getPoints();
+        log.close(); // Waits for a running snapshot, a second log recovering meanwhile would race with it
+        check(Files.exists(dir.resolve("snapshot.bin")), "background snapshot is written");
+        check(contents(recover(dir)).equals(contents(expected)), "concurrent writers, recovered after close");
+    }
+
+    /**
+     * Deletes a directory and it's files.
+     * @param dir Directory
+     * @throws IOException If a file can't be deleted
+     */
+    private static void delete(Path dir) throws IOException {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("crash after snapshot move", MutationLogTest::crashAfterSnapshotMove);
+        scenarios.put("crash before snapshot move", MutationLogTest::crashBeforeSnapshotMove);
+        scenarios.put("torn record", MutationLogTest::tornRecord);
+        scenarios.put("crash after acknowledge", MutationLogTest::crashAfterAcknowledge);
+        scenarios.put("concurrent writers with snapshots", MutationLogTest::concurrentWithSnapshots);
+        for (Map.Entry<String, Scenario> e : scenarios.entrySet()) {
+            Path dir = Files.createTempDirectory("mutationlog");
+            try {
+                e.getValue().run(dir);
+            } finally {
+                delete(dir);
+            }
+            System.out.println("Ran " + e.getKey());
+        }
+        System.out.println(failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.awt.geom.Point2D;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An incremental nearest neighbour cursor over a KDTree. Returns points in increasing distance from the query point, for as
+ * long as the consumer keeps asking. Pending subtrees and points are kept in a priority queue keyed by their distance to the
+ * query point; a subtree's key is the distance of it's region, which is never more than the distance of any point inside, so
+ * a point at the head of the queue is closer than everything not returned yet. Only subtrees that may hold one of the
+ * consumed points are opened. Each step holds tree's read lock, like RangeSpliterator, so a background compaction never runs
+ * in the middle of a step; subtrees replaced by a compaction are still walked as they were. A queued node that was changed by
+ * an insert or remove between steps, e.g. a point node split into a line, is queued again with it's current content, so
+ * every returned distance is exact. Points inserted or removed while the cursor runs may or may not be returned.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class NearestIterator implements Iterator<NearestResult> {
+    /**
+     * A pending subtree or point of the search.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final KDNode node;
+        private final double regionDistSq; // Squared distance of node's region
+        private final double distSq; // Key, squared distance of the point for a point node, of the region otherwise
+        private final Point2D point; // Node's point when it was queued, null for a line node
+
+        private Entry(KDNode node, double regionDistSq, double distSq, Point2D point) {
+            this.node = node;
+            this.regionDistSq = regionDistSq;
+            this.distSq = distSq;
+            this.point = point;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Double.compare(distSq, o.distSq);
+            // On a tie points come first, so they are returned without opening more nodes
+            if (c == 0 && (point == null) != (o.point == null)) {
+                return point != null ? -1 : 1;
+            }
+            return c;
+        }
+    }
+
+    private final Point2D query;
+    private final PriorityQueue<Entry> queue;
+    private final Lock lock; // Tree's read lock
+    private NearestResult next; // Found but not yet returned
+    private int visited;
+
+    /**
+     * Constructor.
+     * @param root Root of the tree to be searched, null for an empty tree
+     * @param query Query point
+     * @param lock Tree's read lock
+     */
+    NearestIterator(KDNode root, Point2D query, Lock lock) {
+        this.query = query;
+        this.lock = lock;
+        this.queue = new PriorityQueue<>();
+        if (root != null) {
+            push(root, 0);
+        }
+    }
+
+    /**
+     * Adds a node to the queue. A point node is keyed by the point's own distance.
+     * @param nd Node
+     * @param regionDistSq Squared distance between query point and node's region
+     */
+    private void push(KDNode nd, double regionDistSq) {
+        if (nd == null) {
+            return;
+        }
+        NodeData dt = nd.getData();
+        if (dt.getDirection() == NodeData.Direction.Point) {
+            if (!dt.isDeleted()) {
+                queue.add(new Entry(nd, regionDistSq, dt.getPoint().distanceSq(query), dt.getPoint()));
+            }
+        } else {
+            queue.add(new Entry(nd, regionDistSq, regionDistSq, null));
+        }
+    }
+
+    /**
+     * Opens nodes until a point is at the head of the queue.
+     * @return Next point, null if there are no more points
+     */
+    private NearestResult advance() {
+        lock.lock();
+        try {
+            while (!queue.isEmpty()) {
+                Entry e = queue.poll();
+                visited++;
+                NodeData dt = e.node.getData();
+                boolean isPoint = dt.getDirection() == NodeData.Direction.Point;
+                if (e.point == null ? isPoint : !isPoint || dt.getPoint() != e.point) {
+                    // Changed since it was queued, split into a line or reused for another point, queued again as it's now
+                    push(e.node, e.regionDistSq);
+                    continue;
+                }
+                if (isPoint) {
+                    if (dt.isDeleted()) { // Removed after it was queued
+                        continue;
+                    }
+                    return new NearestResult(dt.getPoint(), Math.sqrt(e.distSq), true, visited);
+                }
+                push(e.node.getLeftChild(), dt.getLeftRegion().distanceSq(query));
+                push(e.node.getRightChild(), dt.getRightRegion().distanceSq(query));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    /**
+     * @return Next closest point, it's distance and number of nodes visited so far
+     */
+    @Override
+    public NearestResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        NearestResult r = next;
+        next = null;
+        return r;
+    }
+}
@@ -0,0 +1,53 @@
+import java.awt.geom.Point2D;
+
+/**
+ * Result of a nearest neighbour query. An approximate query reports whether it could still guarantee the exact answer.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class NearestResult {
+    private final Point2D point;
+    private final double distance;
+    private final boolean exact;
+    private final int visitedNodes;
+
+    public NearestResult(Point2D point, double distance, boolean exact, int visitedNodes) {
+        this.point = point;
+        this.distance = distance;
+        this.exact = exact;
+        this.visitedNodes = visitedNodes;
+    }
+
+    /**
+     * @return The closest point found
+     */
+    public Point2D getPoint() {
+        return point;
+    }
+
+    /**
+     * @return Distance between query point and found point
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return True if found point is guaranteed to be the nearest one, false if epsilon or visit budget cut the search
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return Number of tree nodes visited by the query
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    public String toString() {
+        return String.format("(%s, %s) distance=%s %s", point.getX(), point.getY(), distance, exact ? "exact" : "approximate");
+    }
+}
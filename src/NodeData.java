@@ -34,6 +34,8 @@ public class NodeData {
     private RectangularHalfPlane leftRegion; // The region of leftside of the line (closed)
     private RectangularHalfPlane rightRegion; // The region of rightside of the line (open)
     private int depth; // depth of the node in tree
+    private boolean deleted; // Point node is removed lazily, and kept as a tombstone until next compaction
+    private final Aggregate aggregate = new Aggregate(); // Weights of remaining points in node's subtree
 
     public NodeData(Direction dir, Point2D pI, int dpth) {
         direction = dir;
@@ -51,6 +53,14 @@ public class NodeData {
         this.direction = dir;
     }
 
+    /**
+     * Returns split axis of a line node.
+     * @return 0 for a vertical line (compare X coords), 1 for a horizontal line (compare Y coords), 0 for a point
+     */
+    public int getAxis() {
+        return direction == Direction.Horizontal ? 1 : 0;
+    }
+
     public Point2D getPoint() {
         return pointIntersecting;
     }
@@ -67,6 +77,18 @@ public class NodeData {
         this.depth = this.depth - 1;
     }
 
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
     public RectangularHalfPlane getLeftRegion() {
         return leftRegion;
     }
@@ -97,7 +119,7 @@ public class NodeData {
 
     public String toString() {
         if (direction == Direction.Point) {
-            return String.format("%s(%s: (%s, %s))", depthToStr(), direction, pointIntersecting.getX(), pointIntersecting.getY());
+            return String.format("%s(%s: (%s, %s))%s", depthToStr(), direction, pointIntersecting.getX(), pointIntersecting.getY(), deleted ? " removed" : "");
         } else { // Vertical or Horizontal cut
             return String.format("%s(%s: (%s))", depthToStr(), direction, direction == Direction.Vertical ? "x=" + pointIntersecting.getX() : "y=" + pointIntersecting.getY());
         }
@@ -0,0 +1,77 @@
+/**
+ * Storage of a FrozenKDTree's nodes. Nodes are addressed by their index in layout order, and children are referenced by index.
+ * Coordinates of points are also stored a second time in left to right order (leaf order), so every subtree's points form a
+ * contiguous run.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public interface NodeStorage {
+    /**
+     * Child index of point (leaf) nodes.
+     */
+    int NONE = -1;
+
+    /**
+     * @return Number of nodes
+     */
+    int size();
+
+    double getX(int nd);
+
+    double getY(int nd);
+
+    int getLeft(int nd);
+
+    int getRight(int nd);
+
+    /**
+     * @param nd Node index
+     * @return 0 if node is a vertical line (compare X coords), 1 if it's a horizontal line (compare Y coords)
+     */
+    int getAxis(int nd);
+
+    /**
+     * Stores a node.
+     * @param nd Node index
+     * @param x X coord of node's point
+     * @param y Y coord of node's point
+     * @param left Index of left child, NONE for points
+     * @param right Index of right child, NONE for points
+     * @param axis Split axis, 0: Vertical, 1: Horizontal
+     */
+    void set(int nd, double x, double y, int left, int right, int axis);
+
+    /**
+     * @param nd Node index of a line
+     * @return Number of points in line's left subtree
+     */
+    int getLeftSize(int nd);
+
+    /**
+     * Stores number of points in a line's left subtree.
+     * @param nd Node index of a line
+     * @param size Number of points
+     */
+    void setLeftSize(int nd, int size);
+
+    /**
+     * @param i Position of a point in leaf order
+     * @return X coord of the point
+     */
+    double getLeafX(int i);
+
+    /**
+     * @param i Position of a point in leaf order
+     * @return Y coord of the point
+     */
+    double getLeafY(int i);
+
+    /**
+     * Stores a point in leaf order.
+     * @param i Position of the point in leaf order
+     * @param x X coord
+     * @param y Y coord
+     */
+    void setLeaf(int i, double x, double y);
+}
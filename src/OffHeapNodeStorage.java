@@ -0,0 +1,108 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Node storage outside of the garbage collected heap, in direct ByteBuffers. Each node is a fixed size record, and records are
+ * split into chunks since a single buffer can't exceed 2GB. Garbage collector sees only the chunk objects, regardless of the
+ * number of nodes. Points in leaf order are kept in separate chunks of (x, y) records.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class OffHeapNodeStorage implements NodeStorage {
+    private static final int RECORD_SIZE = 32; // x(8), y(8), left(4), right(4), axis(4), leftSize(4)
+    private static final int CHUNK_SHIFT = 25; // 2^25 records (1GB) per chunk
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int LEAF_SIZE = 16; // x(8), y(8)
+    private static final int LEAF_CHUNK_SHIFT = 26; // 2^26 leaf records (1GB) per chunk
+    private static final int LEAF_CHUNK_MASK = (1 << LEAF_CHUNK_SHIFT) - 1;
+
+    private final ByteBuffer[] chunks;
+    private final ByteBuffer[] leafChunks;
+    private final int nodeCount;
+
+    /**
+     * Constructor. Allocated memory is released when the storage is garbage collected.
+     * @param nodeCount Number of nodes
+     */
+    public OffHeapNodeStorage(int nodeCount) {
+        this.nodeCount = nodeCount;
+        int chunkCount = (nodeCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+        this.chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int records = Math.min(CHUNK_MASK + 1, nodeCount - (i << CHUNK_SHIFT));
+            chunks[i] = ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        }
+        int leafCount = (nodeCount + 1) / 2;
+        this.leafChunks = new ByteBuffer[(leafCount + LEAF_CHUNK_MASK) >>> LEAF_CHUNK_SHIFT];
+        for (int i = 0; i < leafChunks.length; i++) {
+            int records = Math.min(LEAF_CHUNK_MASK + 1, leafCount - (i << LEAF_CHUNK_SHIFT));
+            leafChunks[i] = ByteBuffer.allocateDirect(records * LEAF_SIZE).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private ByteBuffer chunk(int nd) {
+        return chunks[nd >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int nd) {
+        return (nd & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    public double getX(int nd) {
+        return chunk(nd).getDouble(offset(nd));
+    }
+
+    public double getY(int nd) {
+        return chunk(nd).getDouble(offset(nd) + 8);
+    }
+
+    public int getLeft(int nd) {
+        return chunk(nd).getInt(offset(nd) + 16);
+    }
+
+    public int getRight(int nd) {
+        return chunk(nd).getInt(offset(nd) + 20);
+    }
+
+    public int getAxis(int nd) {
+        return chunk(nd).getInt(offset(nd) + 24);
+    }
+
+    public void set(int nd, double x, double y, int left, int right, int axis) {
+        ByteBuffer c = chunk(nd);
+        int off = offset(nd);
+        c.putDouble(off, x);
+        c.putDouble(off + 8, y);
+        c.putInt(off + 16, left);
+        c.putInt(off + 20, right);
+        c.putInt(off + 24, axis);
+    }
+
+    public int getLeftSize(int nd) {
+        return chunk(nd).getInt(offset(nd) + 28);
+    }
+
+    public void setLeftSize(int nd, int size) {
+        chunk(nd).putInt(offset(nd) + 28, size);
+    }
+
+    public double getLeafX(int i) {
+        return leafChunks[i >>> LEAF_CHUNK_SHIFT].getDouble((i & LEAF_CHUNK_MASK) * LEAF_SIZE);
+    }
+
+    public double getLeafY(int i) {
+        return leafChunks[i >>> LEAF_CHUNK_SHIFT].getDouble((i & LEAF_CHUNK_MASK) * LEAF_SIZE + 8);
+    }
+
+    public void setLeaf(int i, double x, double y) {
+        ByteBuffer c = leafChunks[i >>> LEAF_CHUNK_SHIFT];
+        int off = (i & LEAF_CHUNK_MASK) * LEAF_SIZE;
+        c.putDouble(off, x);
+        c.putDouble(off + 8, y);
+    }
+}
@@ -0,0 +1,163 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact, read-only copy of a FrozenKDTree. Coordinates and split values are stored as 32-bit fixed-point offsets inside
+ * the dataset's bounding box, so traversals compare integers and touch about half of the memory. Quantization is monotonic,
+ * so pruning in integer domain never loses a point; only points on the quantized boundary of a query are checked against
+ * their exact coordinates, which are kept in side arrays.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class QuantizedKDTree {
+    private static final int NONE = NodeStorage.NONE;
+    private static final double STEPS = 4294967295.0; // 2^32 - 1
+
+    private final int[] left; // Left child, NONE for points
+    private final int[] right; // Right child, leaf number for points
+    private final byte[] axis; // 0: Vertical, 1: Horizontal
+    private final int[] qa; // Quantized split value of lines, quantized X coord of points
+    private final int[] qb; // Quantized Y coord of points
+    private final double[] exactX; // Original coordinates, by leaf number
+    private final double[] exactY;
+    private final double minX, minY, scaleX, scaleY;
+    private final int height;
+
+    /**
+     * Quantizes given frozen tree. Tree's layout order is kept.
+     * @param tree Frozen tree
+     */
+    public QuantizedKDTree(FrozenKDTree tree) {
+        NodeStorage nodes = tree.getNodes();
+        int n = nodes.size();
+        this.height = tree.getHeight();
+        this.left = new int[n];
+        this.right = new int[n];
+        this.axis = new byte[n];
+        this.qa = new int[n];
+        this.qb = new int[n];
+        this.exactX = new double[(n + 1) / 2];
+        this.exactY = new double[(n + 1) / 2];
+
+        // Bounding box of the dataset
+        double loX = Double.MAX_VALUE, loY = Double.MAX_VALUE, hiX = -Double.MAX_VALUE, hiY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (nodes.getLeft(i) == NONE) {
+                loX = Math.min(loX, nodes.getX(i));
+                loY = Math.min(loY, nodes.getY(i));
+                hiX = Math.max(hiX, nodes.getX(i));
+                hiY = Math.max(hiY, nodes.getY(i));
+            }
+        }
+        this.minX = loX;
+        this.minY = loY;
+        this.scaleX = hiX > loX ? (hiX - loX) / STEPS : 1;
+        this.scaleY = hiY > loY ? (hiY - loY) / STEPS : 1;
+
+        int leaf = 0;
+        for (int i = 0; i < n; i++) {
+            axis[i] = (byte) nodes.getAxis(i);
+            if (nodes.getLeft(i) == NONE) {
+                left[i] = NONE;
+                right[i] = leaf;
+                qa[i] = quantizeX(nodes.getX(i));
+                qb[i] = quantizeY(nodes.getY(i));
+                exactX[leaf] = nodes.getX(i);
+                exactY[leaf] = nodes.getY(i);
+                leaf++;
+            } else {
+                left[i] = nodes.getLeft(i);
+                right[i] = nodes.getRight(i);
+                qa[i] = axis[i] == 0 ? quantizeX(nodes.getX(i)) : quantizeY(nodes.getY(i));
+            }
+        }
+    }
+
+    /**
+     * Maps a coordinate to it's fixed-point offset. Values outside of bounding box are clamped.
+     * Result is shifted by 2^31, so offsets keep their order when compared as signed integers.
+     * @param v Coordinate
+     * @param min Lower bound of the bounding box
+     * @param scale Size of one step
+     * @return Quantized coordinate
+     */
+    private static int quantize(double v, double min, double scale) {
+        double steps = Math.floor((v - min) / scale);
+        if (steps <= 0) {
+            return Integer.MIN_VALUE;
+        } else if (steps >= STEPS) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) ((long) steps + Integer.MIN_VALUE);
+    }
+
+    private int quantizeX(double v) {
+        return quantize(v, minX, scaleX);
+    }
+
+    private int quantizeY(double v) {
+        return quantize(v, minY, scaleY);
+    }
+
+    /**
+     * @return Number of points in tree
+     */
+    public int size() {
+        return exactX.length;
+    }
+
+    /**
+     * Searches the tree for given point as parameter.
+     * @param point The point going to be searched
+     * @return True if point is found
+     */
+    public boolean search(Point2D point) {
+        return !range(point, point).isEmpty();
+    }
+
+    /**
+     * Returns points in given range (closed), with their exact coordinates.
+     * @param llc Lower Left Corner Point
+     * @param urc Upper Right Corner Point
+     * @return Points in range, from left to right
+     */
+    public List<Point2D> range(Point2D llc, Point2D urc) {
+        List<Point2D> found = new ArrayList<>();
+        if (left.length == 0) {
+            return found;
+        }
+        int qMinX = quantizeX(llc.getX()), qMinY = quantizeY(llc.getY());
+        int qMaxX = quantizeX(urc.getX()), qMaxY = quantizeY(urc.getY());
+        int[] stack = new int[height + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int nd = stack[--top];
+            if (left[nd] == NONE) { // A point is reached
+                int qx = qa[nd], qy = qb[nd];
+                if (qx < qMinX || qx > qMaxX || qy < qMinY || qy > qMaxY) { // Surely outside
+                    continue;
+                }
+                int leaf = right[nd];
+                if (qx > qMinX && qx < qMaxX && qy > qMinY && qy < qMaxY // Surely inside
+                        || exactX[leaf] >= llc.getX() && exactX[leaf] <= urc.getX()
+                        && exactY[leaf] >= llc.getY() && exactY[leaf] <= urc.getY()) {
+                    found.add(new Point2D.Double(exactX[leaf], exactY[leaf]));
+                }
+                continue;
+            }
+            int lo = axis[nd] == 0 ? qMinX : qMinY;
+            int hi = axis[nd] == 0 ? qMaxX : qMaxY;
+            // Comparisons are not strict, so points quantized on the split line are searched on both sides
+            if (hi >= qa[nd]) {
+                stack[top++] = right[nd];
+            }
+            if (lo <= qa[nd]) {
+                stack[top++] = left[nd];
+            }
+        }
+        return found;
+    }
+}
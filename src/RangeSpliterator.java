@@ -0,0 +1,140 @@
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * A lazy range query cursor over a KDTree. Keeps the pending subtrees of the traversal in a stack, and resumes the traversal
+ * only when next point is requested. Splits at tree nodes for parallel streams. Each step holds tree's read lock, so a
+ * background compaction never runs in the middle of a step; subtrees replaced by a compaction are still walked as they were.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class RangeSpliterator implements Spliterator<Point2D> {
+    /**
+     * A pending subtree of the traversal.
+     */
+    private static class Entry {
+        private final KDNode node;
+        private final boolean contained; // Subtree's region is fully contained in range, no more checks required
+
+        private Entry(KDNode node, boolean contained) {
+            this.node = node;
+            this.contained = contained;
+        }
+    }
+
+    private final RectangularHalfPlane range;
+    private final Deque<Entry> stack; // Head of the deque is the next subtree to be visited
+    private final Lock lock; // Tree's read lock
+
+    /**
+     * Constructor.
+     * @param root Root of the tree to be searched, null for an empty tree
+     * @param range Range to be searched
+     * @param lock Tree's read lock
+     */
+    RangeSpliterator(KDNode root, RectangularHalfPlane range, Lock lock) {
+        this.range = range;
+        this.lock = lock;
+        this.stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(new Entry(root, false));
+        }
+    }
+
+    private RangeSpliterator(RectangularHalfPlane range, Deque<Entry> stack, Lock lock) {
+        this.range = range;
+        this.stack = stack;
+        this.lock = lock;
+    }
+
+    /**
+     * Replaces a line node on top of the stack with it's children whose regions intersect with range.
+     * @param e The line node's entry
+     */
+    private void expand(Entry e) {
+        NodeData dt = e.node.getData();
+        // Right child is pushed first, so points are visited from left to right
+        push(e.node.getRightChild(), dt.getRightRegion(), e.contained);
+        push(e.node.getLeftChild(), dt.getLeftRegion(), e.contained);
+    }
+
+    /**
+     * Pushes a child subtree to stack if it's region may contain points in range.
+     * @param nd Child node
+     * @param region Region of the child node
+     * @param contained True if parent's region is already fully contained
+     */
+    private void push(KDNode nd, RectangularHalfPlane region, boolean contained) {
+        if (nd == null) {
+            return;
+        }
+        if (contained || range.contains(region)) {
+            stack.push(new Entry(nd, true));
+        } else if (range.intersects(region)) {
+            stack.push(new Entry(nd, false));
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Point2D> action) {
+        Point2D found = null;
+        lock.lock();
+        try {
+            while (found == null && !stack.isEmpty()) {
+                Entry e = stack.pop();
+                NodeData dt = e.node.getData();
+                if (dt.getDirection() == NodeData.Direction.Point) {
+                    if (!dt.isDeleted() && (e.contained || range.contains(dt.getPoint()))) {
+                        found = dt.getPoint();
+                    }
+                } else {
+                    expand(e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (found == null) {
+            return false;
+        }
+        action.accept(found); // Consumer runs without holding the lock
+        return true;
+    }
+
+    @Override
+    public Spliterator<Point2D> trySplit() {
+        lock.lock();
+        try {
+            // A single pending line node is opened until there is something to share
+            while (stack.size() == 1 && stack.peek().node.getData().getDirection() != NodeData.Direction.Point) {
+                expand(stack.pop());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (stack.size() < 2) {
+            return null;
+        }
+        // Prefix of the traversal goes to the new spliterator, to keep encounter order
+        Deque<Entry> prefix = new ArrayDeque<>();
+        for (int i = stack.size() / 2; i > 0; i--) {
+            prefix.addLast(stack.pollFirst());
+        }
+        return new RangeSpliterator(range, prefix, lock);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
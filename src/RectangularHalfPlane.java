@@ -42,6 +42,22 @@ public class RectangularHalfPlane {
         this.maxY = Double.MAX_VALUE;
     }
 
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
     /**
      * Intersects line's left(or down) side and this half plane
      * @param line The point that a line passes through
@@ -104,6 +120,28 @@ public class RectangularHalfPlane {
         return (hp.maxX <= this.maxX && hp.minX >= this.minX && hp.maxY <= this.maxY && hp.minY >= this.minY);
     }
 
+    /**
+     * Calculates squared distance between given point and the closest point of this half plane (closed).
+     * @param pnt Point to be measured
+     * @return Squared distance, 0 if point is contained
+     */
+    public double distanceSq(Point2D pnt) {
+        double dx = Math.max(0, Math.max(this.minX - pnt.getX(), pnt.getX() - this.maxX));
+        double dy = Math.max(0, Math.max(this.minY - pnt.getY(), pnt.getY() - this.maxY));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Calculates squared distance between the closest points of given half plane and this half plane (closed).
+     * @param hp Half plane to be measured
+     * @return Squared distance, 0 if half planes intersect
+     */
+    public double distanceSq(RectangularHalfPlane hp) {
+        double dx = Math.max(0, Math.max(this.minX - hp.maxX, hp.minX - this.maxX));
+        double dy = Math.max(0, Math.max(this.minY - hp.maxY, hp.minY - this.maxY));
+        return dx * dx + dy * dy;
+    }
+
     /**
      * Checks if given half plane as parameter intersects with this half plane (closed)
      * @param hp Half plane to be checked
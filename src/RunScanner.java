@@ -0,0 +1,55 @@
+/**
+ * Scans runs of points in a NodeStorage's leaf order for FrozenKDTree queries. ScalarRunScanner checks a point per loop
+ * iteration; VectorRunScanner checks several points per instruction with the incubating Vector API, and is used whenever it
+ * can be loaded, see create.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public interface RunScanner {
+    /**
+     * Counts points of a run that are in given rectangle (closed).
+     * @param nodes Node storage holding the run
+     * @param from First index of the run
+     * @param to One past the last index of the run
+     * @param minX Leftmost bound
+     * @param minY Bottom bound
+     * @param maxX Rightmost bound
+     * @param maxY Top bound
+     * @return Number of points in rectangle
+     */
+    int countRect(NodeStorage nodes, int from, int to, double minX, double minY, double maxX, double maxY);
+
+    /**
+     * Collects indices of points in a run that are in given rectangle (closed), in increasing order.
+     * @param hits Indices of found points, at least as long as the run
+     * @return Number of found points
+     */
+    int scanRect(NodeStorage nodes, int from, int to, double minX, double minY, double maxX, double maxY, int[] hits);
+
+    /**
+     * Collects indices of points in a run that are within given distance of a center, in increasing order.
+     * @param cx X coord of center
+     * @param cy Y coord of center
+     * @param radiusSq Squared distance (closed)
+     * @param hits Indices of found points, at least as long as the run
+     * @return Number of found points
+     */
+    int scanRadius(NodeStorage nodes, int from, int to, double cx, double cy, double radiusSq, int[] hits);
+
+    /**
+     * Loads VectorRunScanner reflectively, so the rest of the tree still compiles and runs on Java 8. Falls back to
+     * ScalarRunScanner if it isn't compiled, if the JVM runs without --add-modules jdk.incubator.vector, or if system
+     * property kdtree.scalar is true.
+     * @return Fastest available scanner
+     */
+    static RunScanner create() {
+        if (!Boolean.getBoolean("kdtree.scalar")) {
+            try {
+                return (RunScanner) Class.forName("VectorRunScanner").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) { // Not available, scalar loops are used
+            }
+        }
+        return new ScalarRunScanner();
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Scans runs one point per iteration, reading coordinates through NodeStorage. Works with any storage and any Java version.
+ * The found index is written on every iteration and the write position advances by the comparison's result, so the loop
+ * bodies have no if statement on the coordinates.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class ScalarRunScanner implements RunScanner {
+
+    public int countRect(NodeStorage nodes, int from, int to, double minX, double minY, double maxX, double maxY) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            double x = nodes.getLeafX(i), y = nodes.getLeafY(i);
+            n += (x >= minX & x <= maxX & y >= minY & y <= maxY) ? 1 : 0;
+        }
+        return n;
+    }
+
+    public int scanRect(NodeStorage nodes, int from, int to, double minX, double minY, double maxX, double maxY, int[] hits) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            double x = nodes.getLeafX(i), y = nodes.getLeafY(i);
+            hits[n] = i;
+            n += (x >= minX & x <= maxX & y >= minY & y <= maxY) ? 1 : 0;
+        }
+        return n;
+    }
+
+    public int scanRadius(NodeStorage nodes, int from, int to, double cx, double cy, double radiusSq, int[] hits) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            double dx = nodes.getLeafX(i) - cx, dy = nodes.getLeafY(i) - cy;
+            hits[n] = i;
+            n += (dx * dx + dy * dy <= radiusSq) ? 1 : 0;
+        }
+        return n;
+    }
+}
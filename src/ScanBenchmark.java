@@ -0,0 +1,117 @@
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+/**
+ * Compares run scanners of FrozenKDTree. First times ScalarRunScanner and the scanner RunScanner.create picks on the same
+ * runs of a heap tree's leaf order, and checks that both find the same points; then times rectangle and distance queries
+ * through FrozenKDTree, which use the picked scanner. Run with --add-modules jdk.incubator.vector for the Vector API
+ * scanner, and with -Dkdtree.scalar=true for comparing queries with scalar scans.
+ * Usage: java ScanBenchmark [points] [runs] [run length] [rounds]
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class ScanBenchmark {
+
+    /**
+     * Times a scanner on given runs, best of given rounds.
+     * @param scanner Scanner
+     * @param nodes Node storage
+     * @param starts First index of each run
+     * @param length Run length
+     * @param d Half side of query rectangles, and radius of query circles, around each run's first point
+     * @param rounds Number of rounds
+     * @return Nanoseconds per run of countRect, scanRect and scanRadius, and a checksum of found points
+     */
+    private static long[] time(RunScanner scanner, NodeStorage nodes, int[] starts, int length, double d, int rounds) {
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, 0};
+        int[] hits = new int[length];
+        for (int r = 0; r < rounds; r++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int s : starts) {
+                double x = nodes.getLeafX(s), y = nodes.getLeafY(s);
+                checksum += scanner.countRect(nodes, s, s + length, x - d, y - d, x + d, y + d);
+            }
+            best[0] = Math.min(best[0], (System.nanoTime() - start) / starts.length);
+            start = System.nanoTime();
+            for (int s : starts) {
+                double x = nodes.getLeafX(s), y = nodes.getLeafY(s);
+                int n = scanner.scanRect(nodes, s, s + length, x - d, y - d, x + d, y + d, hits);
+                for (int i = 0; i < n; i++) {
+                    checksum = checksum * 31 + hits[i];
+                }
+            }
+            best[1] = Math.min(best[1], (System.nanoTime() - start) / starts.length);
+            start = System.nanoTime();
+            for (int s : starts) {
+                int n = scanner.scanRadius(nodes, s, s + length, nodes.getLeafX(s), nodes.getLeafY(s), d * d, hits);
+                for (int i = 0; i < n; i++) {
+                    checksum = checksum * 31 + hits[i];
+                }
+            }
+            best[2] = Math.min(best[2], (System.nanoTime() - start) / starts.length);
+            best[3] = checksum;
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int length = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Random random = new Random(1);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 1000;
+            ys[i] = random.nextDouble() * 1000;
+        }
+        FrozenKDTree tree = FrozenKDTree.bulkLoad(xs, ys, false);
+        NodeStorage nodes = tree.getNodes();
+        int[] starts = new int[runs];
+        for (int r = 0; r < runs; r++) {
+            starts[r] = random.nextInt(n - length + 1);
+        }
+        double d = 1000 * Math.sqrt((double) length / n) / 2; // A run's subtree spans about twice this
+
+        RunScanner picked = RunScanner.create();
+        System.out.printf("%d points, %d runs of %d points, best of %d rounds%n", n, runs, length, rounds);
+        long[] scalar = time(new ScalarRunScanner(), nodes, starts, length, d, rounds);
+        System.out.printf("  ScalarRunScanner: countRect %d ns, scanRect %d ns, scanRadius %d ns per run%n", scalar[0],
+                scalar[1], scalar[2]);
+        if (!(picked instanceof ScalarRunScanner)) {
+            long[] other = time(picked, nodes, starts, length, d, rounds);
+            System.out.printf("  %s: countRect %d ns, scanRect %d ns, scanRadius %d ns per run%n",
+                    picked.getClass().getName(), other[0], other[1], other[2]);
+            if (other[3] != scalar[3]) {
+                System.out.println("Scanners found different points");
+                System.exit(1);
+            }
+        }
+
+        // Queries through the tree, about 10 points each
+        double side = 1000 * Math.sqrt(10.0 / n);
+        long bestRange = Long.MAX_VALUE, bestRadius = Long.MAX_VALUE, found = 0;
+        for (int r = 0; r < rounds; r++) {
+            Random queries = new Random(2);
+            found = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < runs; q++) {
+                double x = queries.nextDouble() * 1000, y = queries.nextDouble() * 1000;
+                found += tree.rangeCount(new Point2D.Double(x, y), new Point2D.Double(x + side, y + side));
+            }
+            bestRange = Math.min(bestRange, (System.nanoTime() - start) / runs);
+            start = System.nanoTime();
+            for (int q = 0; q < runs; q++) {
+                found += tree.withinDistance(new Point2D.Double(queries.nextDouble() * 1000, queries.nextDouble() * 1000),
+                        side / 2).size();
+            }
+            bestRadius = Math.min(bestRadius, (System.nanoTime() - start) / runs);
+        }
+        System.out.printf("  FrozenKDTree with %s: rangeCount %d ns, withinDistance %d ns per query (%d found)%n",
+                picked.getClass().getName(), bestRange, bestRadius, found);
+    }
+}
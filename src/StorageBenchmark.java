@@ -0,0 +1,140 @@
+import java.awt.geom.Point2D;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Compares garbage collection cost of a FrozenKDTree with heap and off-heap node storage, against the KDNode graph of a
+ * KDTree as baseline. For each storage, builds a tree of the same uniform points, then reports live heap and direct memory
+ * held by the tree, the average pause of a full collection while the tree is alive, and collections spent during a range
+ * query workload. Frozen trees are bulk loaded from coordinate arrays, so no KDNode graph is created for them; freezing a
+ * KDTree with freezeOffHeap would need the graph on heap first.
+ * Each storage is best measured in it's own JVM, so garbage of one run doesn't show up in the other.
+ * Usage: java StorageBenchmark [graph|heap|offheap|all] [points] [queries] [full collections]
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class StorageBenchmark {
+
+    /**
+     * @return Heap used after a full collection, in bytes
+     */
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return Memory used by direct buffers, in bytes
+     */
+    private static long directMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Number of collections and total collection time in milliseconds, of all collectors
+     */
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Measures a single storage kind.
+     * @param storage graph for a KDTree, heap or offheap for a FrozenKDTree
+     * @param xs X coords of points
+     * @param ys Y coords of points
+     * @param queries Number of range queries in the workload
+     * @param fullCollections Number of timed full collections
+     */
+    private static void run(String storage, double[] xs, double[] ys, int queries, int fullCollections) {
+        long heapBefore = liveHeap();
+        long directBefore = directMemory();
+        long start = System.nanoTime();
+        BiFunction<Point2D, Point2D, List<Point2D>> range; // Keeps the tree alive until the workload is done
+        int size;
+        if (storage.equals("graph")) {
+            List<Point2D> points = new ArrayList<>(xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                points.add(new Point2D.Double(xs[i], ys[i]));
+            }
+            KDTree tree = KDTree.buildKDTree(points);
+            range = (llc, urc) -> tree.rangeStream(llc, urc, false).collect(Collectors.toList());
+            size = tree.size();
+        } else {
+            FrozenKDTree tree = FrozenKDTree.bulkLoad(xs, ys, storage.equals("offheap"));
+            range = tree::range;
+            size = tree.size();
+        }
+        long buildNanos = System.nanoTime() - start;
+        long heap = liveHeap() - heapBefore;
+        long direct = directMemory() - directBefore;
+
+        long pauses = 0;
+        for (int i = 0; i < fullCollections; i++) {
+            long t = System.nanoTime();
+            System.gc();
+            pauses += System.nanoTime() - t;
+        }
+
+        // Range queries allocate their results, so young collections run while the tree is alive
+        Random random = new Random(7);
+        long[] before = gcTotals();
+        long found = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            double x = random.nextDouble() * 1000, y = random.nextDouble() * 1000;
+            found += range.apply(new Point2D.Double(x, y), new Point2D.Double(x + 2, y + 2)).size();
+        }
+        long queryNanos = System.nanoTime() - start;
+        long[] after = gcTotals();
+
+        String name = storage.equals("graph") ? "KDNode graph" : storage.equals("heap") ? "Heap" : "Off-heap";
+        System.out.printf("%s storage, %d points, built in %.2f s%n", name, size, buildNanos / 1e9);
+        System.out.printf("  live heap %.1f MB, direct memory %.1f MB%n", heap / 1e6, direct / 1e6);
+        System.out.printf("  full collection pause %.1f ms (average of %d)%n", pauses / 1e6 / Math.max(1, fullCollections),
+                fullCollections);
+        System.out.printf("  %d range queries (%d points) in %.2f s, %d collections taking %d ms%n", queries, found,
+                queryNanos / 1e9, after[0] - before[0], after[1] - before[1]);
+    }
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "all";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        int fullCollections = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        if (!Arrays.asList("graph", "heap", "offheap", "all").contains(mode)) {
+            System.err.println("Usage: java StorageBenchmark [graph|heap|offheap|all] [points] [queries] [full collections]");
+            System.exit(1);
+        }
+
+        Random random = new Random(1);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 1000;
+            ys[i] = random.nextDouble() * 1000;
+        }
+        for (String storage : new String[] {"graph", "heap", "offheap"}) {
+            if (mode.equals("all") || mode.equals(storage)) {
+                run(storage, xs, ys, queries, fullCollections);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.awt.geom.Point2D;
+
+/**
+ * A point carrying a payload: a record id and a weight. Equality and hashing are by coordinates only, like any Point2D,
+ * so a weighted point can be searched and removed with a bare Point2D.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class WeightedPoint extends Point2D.Double {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final double weight;
+
+    public WeightedPoint(double x, double y, long id, double weight) {
+        super(x, y);
+        this.id = id;
+        this.weight = weight;
+    }
+
+    /**
+     * @return Record id of the point
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return Weight of the point
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns weight of any point. Points without a payload weigh 0.
+     * @param p Point
+     * @return Weight of the point
+     */
+    public static double weightOf(Point2D p) {
+        return p instanceof WeightedPoint ? ((WeightedPoint) p).weight : 0;
+    }
+
+    /**
+     * Returns record id of any point. Points without a payload have id 0.
+     * @param p Point
+     * @return Record id of the point
+     */
+    public static long idOf(Point2D p) {
+        return p instanceof WeightedPoint ? ((WeightedPoint) p).id : 0;
+    }
+
+    public String toString() {
+        return String.format("(%s, %s) id=%d weight=%s", getX(), getY(), id, weight);
+    }
+}
@@ -0,0 +1,215 @@
+import java.awt.geom.Point2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates reproducible point sets and directive streams for load and stress testing. Directives use the grammar of
+ * KDTreeQuery, so a generated workload can be written to files and replayed by KDTreeQuery or KDTreeLoadClient as well.
+ * Generated points carry a record id and a weight, so aggregates are exercised too.
+ * @since 10/19/2026
+ * @version 1.0
+ */
+
+public class WorkloadGenerator {
+    /**
+     * Shape of generated point sets.
+     */
+    public enum Dataset {
+        uniform, // Uniformly distributed in [0, 1000) x [0, 1000)
+        clusters, // Gaussian clusters, dense and sparse areas
+        lines, // Points on a few vertical and horizontal lines, inserted in sorted order, so many coords tie with split lines
+        duplicates // Few distinct locations, each holding many points
+    }
+
+    private static final double SIZE = 1000;
+
+    private final Random random;
+    private final Dataset dataset;
+    private long nextId = 1;
+    private double[][] centers; // Cluster centers or duplicate locations
+    private int lineCursor; // Position of next point along lines
+
+    /**
+     * Constructor.
+     * @param dataset Shape of points
+     * @param seed Random seed, same seed generates same workload
+     */
+    public WorkloadGenerator(Dataset dataset, long seed) {
+        this.dataset = dataset;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates a new point of the dataset's shape, with a fresh id and a weight derived from it's coords. Weights are
+     * multiples of 0.25, so their sums are exact in any order.
+     * @return New point
+     */
+    private Point2D nextPoint() {
+        double x, y;
+        switch (dataset) {
+            case clusters: {
+                double[] c = centers[random.nextInt(centers.length)];
+                x = c[0] + random.nextGaussian() * c[2];
+                y = c[1] + random.nextGaussian() * c[2];
+                break;
+            }
+            case lines: {
+                int line = random.nextInt(8);
+                double along = (lineCursor++ % 10000) * (SIZE / 10000);
+                if (line < 4) { // Vertical line
+                    x = (line + 1) * SIZE / 5;
+                    y = along;
+                } else { // Horizontal line
+                    x = along;
+                    y = (line - 3) * SIZE / 5;
+                }
+                break;
+            }
+            case duplicates: {
+                double[] c = centers[random.nextInt(centers.length)];
+                x = c[0];
+                y = c[1];
+                break;
+            }
+            default:
+                x = round(random.nextDouble() * SIZE);
+                y = round(random.nextDouble() * SIZE);
+                break;
+        }
+        // Copies of a location weigh the same, so it doesn't matter which copy a remove takes
+        return new WeightedPoint(x, y, nextId++, Math.floorMod(Double.hashCode(x) * 31 + Double.hashCode(y), 400) / 4.0);
+    }
+
+    /**
+     * Rounds a coordinate to 3 decimals, so it's printed short and occasionally ties with another one.
+     * @param v Coordinate
+     * @return Rounded coordinate
+     */
+    private static double round(double v) {
+        return Math.round(v * 1000) / 1000.0;
+    }
+
+    /**
+     * Generates initial points of the workload.
+     * @param n Number of points
+     * @return Generated points
+     */
+    public List<Point2D> points(int n) {
+        int k = Math.max(1, (int) Math.sqrt(n) / (dataset == Dataset.duplicates ? 4 : 10));
+        centers = new double[k][];
+        for (int i = 0; i < k; i++) {
+            double spread = SIZE / 200 * (1 + random.nextInt(10));
+            centers[i] = new double[] {round(random.nextDouble() * SIZE), round(random.nextDouble() * SIZE), spread};
+        }
+        List<Point2D> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            points.add(nextPoint());
+        }
+        return points;
+    }
+
+    /**
+     * Generates a directive stream over given initial points. Reads are searches (half of them for existing points),
+     * exact and approximate nearest and k nearest neighbour queries, small ranges, aggregates, histograms, self joins and
+     * findMin/findMax; writes are inserts of new points and removes (mostly of existing points).
+     * @param initial Initial points of the tree, generated by points
+     * @param count Number of directives
+     * @param readRatio Ratio of read directives, between 0 and 1
+     * @return Directive lines
+     */
+    public List<String> directives(List<Point2D> initial, int count, double readRatio) {
+        List<Point2D> live = new ArrayList<>(initial); // Points in tree while the stream runs
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (live.isEmpty() || random.nextDouble() >= readRatio) { // A write
+                if (live.isEmpty() || random.nextBoolean()) {
+                    WeightedPoint p = (WeightedPoint) nextPoint();
+                    live.add(p);
+                    lines.add(format("insert %s %s %d %s", p.getX(), p.getY(), p.getId(), p.getWeight()));
+                } else {
+                    Point2D p;
+                    if (random.nextInt(5) > 0) {
+                        int idx = random.nextInt(live.size());
+                        p = live.get(idx);
+                        live.set(idx, live.get(live.size() - 1));
+                        live.remove(live.size() - 1);
+                    } else { // Most likely not in tree
+                        p = nextPoint();
+                    }
+                    lines.add(format("remove %s %s", p.getX(), p.getY()));
+                }
+                continue;
+            }
+
+            int kind = random.nextInt(1000);
+            Point2D p = random.nextBoolean() ? live.get(random.nextInt(live.size())) : nextPoint();
+            if (kind < 330) {
+                lines.add(format("search %s %s", p.getX(), p.getY()));
+            } else if (kind < 430) {
+                lines.add(format("nearest %s %s", p.getX(), p.getY()));
+            } else if (kind < 500) {
+                // Approximate, with an error bound and sometimes a visit budget
+                double[] epsilons = {0.1, 0.5, 1};
+                int maxVisits = random.nextBoolean() ? Integer.MAX_VALUE : 8 + random.nextInt(57);
+                lines.add(format("nearest %s %s %s %d", p.getX(), p.getY(), epsilons[random.nextInt(3)], maxVisits));
+            } else if (kind < 600) {
+                lines.add(format("knn %s %s %d", p.getX(), p.getY(), 1 + random.nextInt(20)));
+            } else if (kind < 930) {
+                // Side expected to hold about 20 points of a uniform set, sometimes a line
+                double side = SIZE * Math.sqrt(20.0 / Math.max(1, live.size()));
+                double w = random.nextInt(10) == 0 ? 0 : side * random.nextDouble() * 2;
+                double h = random.nextInt(10) == 0 ? 0 : side * random.nextDouble() * 2;
+                String d = kind < 850 ? "range" : "aggregate";
+                lines.add(format("%s %s %s %s %s", d, p.getX() - w / 2, p.getY() - h / 2, p.getX() + w / 2, p.getY() + h / 2));
+            } else if (kind < 960) {
+                // Grid expected to hold about 200 points of a uniform set
+                double side = SIZE * Math.sqrt(200.0 / Math.max(1, live.size())) * (0.5 + random.nextDouble());
+                lines.add(format("histogram %s %s %s %s %d %d", p.getX() - side / 2, p.getY() - side / 2, p.getX() + side / 2,
+                        p.getY() + side / 2, 1 + random.nextInt(8), 1 + random.nextInt(8)));
+            } else if (kind < 965) {
+                // Distance expected to give each point of a uniform set about 2 neighbours
+                lines.add(format("join %s", SIZE * Math.sqrt(2 / (Math.PI * Math.max(1, live.size())))));
+            } else {
+                String[] extremes = {"findMinX", "findMinY", "findMaxX", "findMaxY"};
+                lines.add(extremes[random.nextInt(4)]);
+            }
+        }
+        return lines;
+    }
+
+    private static String format(String format, Object... args) {
+        return String.format(Locale.ROOT, format, args);
+    }
+
+    /**
+     * Writes a workload as a points file and a directives file, readable by KDTreeQuery.
+     * @param points Initial points
+     * @param directives Directive lines, quit is appended
+     * @param pointsFileName Points file to be written
+     * @param directivesFileName Directives file to be written
+     * @throws IOException If a file can't be written
+     */
+    public static void write(List<Point2D> points, List<String> directives, String pointsFileName, String directivesFileName)
+            throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(Paths.get(pointsFileName))) {
+            for (Point2D p : points) {
+                w.write(format("%s %s %d %s", p.getX(), p.getY(), WeightedPoint.idOf(p), WeightedPoint.weightOf(p)));
+                w.newLine();
+            }
+        }
+        try (BufferedWriter w = Files.newBufferedWriter(Paths.get(directivesFileName))) {
+            for (String line : directives) {
+                w.write(line);
+                w.newLine();
+            }
+            w.write("quit");
+            w.newLine();
+        }
+    }
+}